@@ -0,0 +1,40 @@
+package app.bench;
+
+import app.Board;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GenerateBench class measures the generation rate: boards
+ * refilled in place, each from the next seed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GenerateBench {
+    @Param({"2", "4", "8", "32", "256", "1024"})
+    public int size;
+    private Board board;
+    private long seed; //Seed of the next board
+
+    /**
+     * Sets up a board to refill
+     */
+    @Setup
+    public void setup() {
+        board = new Board(null, size, Seeds.BOARD);
+        seed = Seeds.BOARD;
+    }
+
+    /**
+     * Generates the next board
+     */
+    @Benchmark
+    public void generate() {
+        board.generate(seed++);
+    }
+}
@@ -0,0 +1,70 @@
+package app.bench;
+
+import app.Board;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The PressBench class measures press throughput: presses made
+ * in a fixed random order, so black wanders like it does in play.
+ * Board presses go through everything a player's press does
+ * (history, hint cancelling, metrics checks) on a board with no
+ * listener; state presses are the packed state alone, so the
+ * gap between them is the board's bookkeeping.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PressBench {
+    private static final int MOVES = 1 << 16; //Presses in the cycle (a power of 2)
+    @Param({"2", "4", "8", "32", "256", "1024"})
+    public int size;
+    private Board board; //Headless, so presses aren't drawn
+    private app.State state; //Pressed directly
+    private int[] rows, cols; //Presses to make, in order
+    private int next; //Next press for the board
+    private int nextState; //Next press for the state
+
+    /**
+     * Sets up a board, a state, and the presses to make
+     */
+    @Setup
+    public void setup() {
+        board = new Board(null, size, Seeds.BOARD);
+        state = new app.State(board.getState());
+        SplittableRandom random = new SplittableRandom(Seeds.MOVES);
+        rows = new int[MOVES];
+        cols = new int[MOVES];
+        for(int i = 0; i < MOVES; i++) {
+            rows[i] = random.nextInt(size);
+            cols[i] = random.nextInt(size);
+        } //End press loop
+    }
+
+    /**
+     * Presses the next tile through the board, starting the board
+     * again after each cycle so its history stays bounded
+     * (refilling is a few words per row, once every MOVES presses)
+     */
+    @Benchmark
+    public void boardPress() {
+        int move = next++ & MOVES - 1;
+        if(move == 0)
+            board.generate(Seeds.BOARD); //Same board, empty history
+        board.press(rows[move], cols[move]);
+    }
+
+    /**
+     * Presses the next tile on the packed state alone
+     */
+    @Benchmark
+    public void statePress() {
+        int move = nextState++ & MOVES - 1;
+        state.press(rows[move], cols[move]);
+    }
+}
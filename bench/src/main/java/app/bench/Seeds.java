@@ -0,0 +1,16 @@
+package app.bench;
+
+/**
+ * The Seeds class holds the seeds every benchmark draws from,
+ * so runs on different commits see the same boards and presses.
+ */
+final class Seeds {
+    static final long BOARD = 0x15; //First board's seed
+    static final long MOVES = 0x4D4C; //Seed for press orders
+
+    /**
+     * Not instantiable (constants only)
+     */
+    private Seeds() {
+    }
+}
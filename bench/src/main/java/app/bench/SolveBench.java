@@ -0,0 +1,47 @@
+package app.bench;
+
+import app.Board;
+import app.Solver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SolveBench class measures end-to-end headless solves with
+ * the heuristic solver, each on the next seed's board. Run it with
+ * -prof gc for the allocation rate. (Each solve includes generating
+ * its board, which GenerateBench shows is a small part of it.)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SolveBench {
+    @Param({"2", "4", "8", "32", "256", "1024"})
+    public int size;
+    private Board board;
+    private long seed; //Seed of the next board
+
+    /**
+     * Sets up a board to refill
+     */
+    @Setup
+    public void setup() {
+        board = new Board(null, size, Seeds.BOARD);
+        seed = Seeds.BOARD;
+    }
+
+    /**
+     * Generates the next board and solves it
+     * @return The presses it took (returned so it isn't optimized away)
+     */
+    @Benchmark
+    public int solve() {
+        board.generate(seed++);
+        Solver solver = new Solver(board);
+        solver.solve();
+        return solver.getPresses();
+    }
+}
@@ -0,0 +1,39 @@
+package app.bench;
+
+import app.Board;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SolvedBench class measures the cost of checking a board
+ * for being solved (it's checked after every press).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SolvedBench {
+    @Param({"2", "4", "8", "32", "256", "1024"})
+    public int size;
+    private Board board;
+
+    /**
+     * Sets up a board
+     */
+    @Setup
+    public void setup() {
+        board = new Board(null, size, Seeds.BOARD);
+    }
+
+    /**
+     * Checks the board
+     * @return Whether it's solved (returned so it isn't optimized away)
+     */
+    @Benchmark
+    public boolean isSolved() {
+        return board.isSolved();
+    }
+}
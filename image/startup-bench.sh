@@ -0,0 +1,36 @@
+#!/bin/sh
+# Times launch to first frame, and to the first frame with tiles, for
+# the game on a full JDK (the way it ran before: JavaFX on the module
+# path, no archive of its classes) and from the runtime image (jlink'd,
+# with its CDS archive). Each runs twice: with the tiles built before
+# the window shows (--eager=true, as before), and with the window shown
+# first and the tiles after it. Prints the median of each over some runs.
+# Build the image first: mvn -f image/pom.xml clean package
+# Needs a display, and GNU date (for milliseconds).
+# Usage: image/startup-bench.sh [runs] [size]
+
+RUNS=${1:-10}
+SIZE=${2:-4}
+TARGET=$(cd "$(dirname "$0")" && pwd)/target
+MODULE=Fifteen.Mystic.Lights.GUI
+
+# Runs a launch command over and over (the size and launch time go on
+# the end), then prints the medians of what the game reported
+bench() {
+    label=$1
+    shift
+    times=$(mktemp)
+    for run in $(seq "$RUNS"); do
+        "$@" "$SIZE" "--startup=$(date +%s%3N)" \
+            | sed -n 's/^First frame: \([0-9]*\) ms, tiles: \([0-9]*\) ms$/\1 \2/p' >> "$times"
+    done
+    frame=$(cut -d' ' -f1 "$times" | sort -n | awk '{ t[NR] = $1 } END { print t[int((NR + 1) / 2)] }')
+    tiles=$(cut -d' ' -f2 "$times" | sort -n | awk '{ t[NR] = $1 } END { print t[int((NR + 1) / 2)] }')
+    printf '%-12s first frame %6s ms   tiles %6s ms   (%d runs)\n' "$label" "$frame" "$tiles" "$(wc -l < "$times")"
+    rm -f "$times"
+}
+
+bench "JDK, eager" java -p "$TARGET/modules:$TARGET/classes" -m "$MODULE/app.GUI" --eager=true
+bench "JDK, lazy" java -p "$TARGET/modules:$TARGET/classes" -m "$MODULE/app.GUI"
+bench "Image, eager" "$TARGET/image/bin/fml" --eager=true
+bench "Image, lazy" "$TARGET/image/bin/fml"
@@ -0,0 +1,69 @@
+package app;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The Batch class solves lots of random boards with no display,
+ * for capacity runs on servers. It reports boards/sec, presses/sec
+ * and how the press counts are spread out.
+ */
+public class Batch {
+    /**
+     * Not instantiable (it only runs from main)
+     */
+    private Batch() {
+    }
+
+    /**
+     * The main method, which generates and solves boards
+     * @param args Command line args: boards, size, threads and seed
+     *             (numbers, in that order), plus "optimal" anywhere
+     */
+    public static void main(String[] args) {
+        long[] numbers = {1000, 4, Runtime.getRuntime().availableProcessors(),
+                new SplittableRandom().nextLong()}; //Defaults
+        boolean optimal = false;
+        int given = 0;
+        for(String arg : args) {
+            if(arg.equalsIgnoreCase("optimal"))
+                optimal = true;
+            else if(given < numbers.length)
+                numbers[given++] = Long.parseLong(arg);
+        } //End argument loop
+        int count = (int) numbers[0], size = (int) numbers[1], threads = (int) numbers[2];
+
+        SolverFarm farm = new SolverFarm(size, optimal, threads); //Headless, so no listeners
+        SolverFarm.Result result = farm.solve(count, numbers[3]);
+        farm.close();
+        double seconds = result.getNanos() / 1e9;
+        int[] presses = result.getPresses();
+
+        long total = 0;
+        for(int p : presses)
+            total += p;
+        Arrays.sort(presses);
+        System.out.printf("Solved %,d %dx%d boards (%s, %d threads, seed %d) in %.3f s%n", count,
+                size, size, optimal ? "optimal" : "heuristic", threads, numbers[3], seconds);
+        System.out.printf("  boards/sec:  %,.0f%n", count / seconds);
+        System.out.printf("  presses/sec: %,.0f%n", total / seconds);
+        if(count > 0)
+            System.out.printf("  presses:     min %d, p50 %d, p90 %d, p99 %d, max %d, mean %.2f%n",
+                    presses[0], percentile(presses, 50), percentile(presses, 90),
+                    percentile(presses, 99), presses[count - 1], (double) total / count);
+        System.out.printf("  failed:      %d%n", result.getFailed());
+        if(Metrics.ENABLED) //Run with -Dfml.metrics=true for the engine's own numbers
+            System.out.print(Metrics.report());
+    }
+
+    /**
+     * Helper method used to read a percentile from sorted counts
+     * @param sorted The sorted counts
+     * @param percent The percentile (0-100)
+     * @return The count at that percentile
+     */
+    private static int percentile(int[] sorted, int percent) {
+        int index = (int) Math.ceil(sorted.length * percent / 100.0) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
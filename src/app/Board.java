@@ -1,64 +1,147 @@
 package app;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.security.InvalidParameterException;
-import java.time.Instant; //Timed RNG
-import java.util.Random;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 
 /**
  * The Board class represents a full board of tiles.
- * All tile logic is delegated to the individual tiles,
- * which may refer back to their board. This class is only
- * for linking to the GUI and generating/organizing tiles.
+ * All tile logic is delegated to the packed state engine,
+ * which tiles are thin views over. This class is only
+ * for linking to a listener (like the GUI, or nothing when
+ * running headless) and generating/organizing tiles.
+ * Every press is kept in a history, which can be saved,
+ * loaded, moved through (see Recording), undone and redone.
+ * History entries are one int each: the press, shifted up 3 bits,
+ * over a code for what it did to black, so undo is exact and O(1).
  */
 public class Board {
-    private final Random random; //Timed RNG
-    private Tile[][] tiles; //Tile "board"
+    public static final int MAX_SIZE = 1 << 14; //Biggest size whose presses fit in a history entry
+    private static final int PLAIN = 0, BLACK = 1, SWAP = 2; //History codes (swaps add a side)
+    private static final int TRACKED = 64; //Most presses a batch tracks tile by tile (past that, all changed)
+    private final SplittableRandom random; //Unique per board, even when made together
+    private final State state; //Packed lights
+    private final State start; //Lights before the first press in the history
+    private int[] history = new int[16]; //History entries (press << 3 | code)
+    private int historyCount; //Presses made so far (the rest can be moved forward to)
+    private int historyEnd; //Presses in the history
+    private Recording recording; //Recording the history was loaded from, if any
+    private int recorded; //Presses in the history that match the recording
+    private long seed; //Seed of the current board
+    private Tile[][] tiles; //Tile views (made on request)
     private boolean guiReady = false;
+    private final BoardListener listener;
+    private int[] changed = new int[5]; //Tiles changed by the last press or batch (may repeat)
+    private int changedCount; //How many of those are in use (-1 if any tile may have changed)
+    private HintSearch hintSearch; //Hint being searched for, if any
     private final int size; //2+
-    private final GUI gui;
 
     /**
      * Delegates to the below constructor w/ size 4
-     * @param gui The GUI to link to the board
+     * @param listener The listener (usually the GUI) to link to the board
      */
-    public Board(GUI gui) {
-        this(gui, 4);
+    public Board(BoardListener listener) {
+        this(listener, 4);
     } //4 size = 15 lights
 
+    /**
+     * Creates a headless board with no listener
+     * @param size The size of the board
+     */
+    public Board(int size) {
+        this(null, size);
+    }
+
     /**
      * Creates and generates randomization and a board
-     * @param gui The GUI to link to the board
+     * @param listener The listener to link to the board (null if headless)
      * @param size The size of the board
      */
-    public Board(GUI gui, int size) {
+    public Board(BoardListener listener, int size) {
+        this(listener, size, new SplittableRandom()); //Seeds never repeat across boards
+    }
+
+    /**
+     * Creates a board whose boards all come from one seed,
+     * for reproducible runs
+     * @param listener The listener to link to the board (null if headless)
+     * @param size The size of the board
+     * @param seed The seed for every board this one generates
+     */
+    public Board(BoardListener listener, int size, long seed) {
+        this(listener, size, new SplittableRandom(seed));
+    }
+
+    /**
+     * Creates and generates a board from a random stream
+     * @param listener The listener to link to the board (null if headless)
+     * @param size The size of the board
+     * @param random The random stream for every board this one generates
+     */
+    private Board(BoardListener listener, int size, SplittableRandom random) {
         if(size < 2) //If size is too small, error out
             throw new InvalidParameterException("Board size below 2 received");
+        if(size > MAX_SIZE) //Same if it's too big to keep a history of
+            throw new InvalidParameterException("Board size above " + MAX_SIZE + " received");
         this.size = size; //Otherwise, set the size and continue doing things
-        this.gui = gui; //GUI stored to allow for updating its shown board
-        random = new Random(Instant.now().toEpochMilli());
-        tiles = new Tile[size][size];
+        this.listener = listener; //Stored to allow for updating its shown board
+        this.random = random;
+        state = new State(size);
+        start = new State(size);
         generate();
     }
 
+    /**
+     * Creates a headless copy of another board, so solves
+     * can be planned without touching the shown board
+     * @param other The board to copy
+     */
+    public Board(Board other) {
+        size = other.size;
+        listener = null; //Copies are never shown
+        random = new SplittableRandom();
+        state = new State(other.state);
+        start = new State(other.state); //History starts at the copy
+        seed = other.seed;
+    }
+
     /**
      * Randomly generates a new board with one black tile
      */
     public void generate() {
-        for(int row = 0; row < size; row++) {
-            for(int col = 0; col < size; col++) {
-                tiles[row][col] = new Tile(this, row, col,
-                        random.nextBoolean() ? 1 : -1);
-            } //End column-counting loop
-        } //End row-counting loop
-        int blackRow = random.nextInt(size);
-        int blackCol = random.nextInt(size);
-        tiles[blackRow][blackCol].setState(0);
-        if(isSolved()) { //If the new board is solved...
-            tiles[0][0].flipCheck();
-            tiles[0][1].flipCheck();
-        } //Flip two tiles so it won't be solved
-        if(guiReady) //If the GUI is initialized, update
-            gui.update(this, true);
+        generate(random);
+    }
+
+    /**
+     * Randomly generates a new board from a given random stream
+     * (so each solver farm worker can use its own split stream)
+     * @param random The random stream to draw from
+     */
+    public void generate(SplittableRandom random) {
+        generate(random.nextLong());
+    }
+
+    /**
+     * Generates a new board from a seed, refilling the state in place
+     * (the same seed always gives the same board, and it's never solved)
+     * @param seed The seed for the board
+     */
+    public void generate(long seed) {
+        long began = Metrics.start();
+        cancelHint();
+        this.seed = seed;
+        state.fill(seed);
+        start.copyFrom(state); //New board, new history
+        historyCount = historyEnd = recorded = 0;
+        recording = null;
+        if(guiReady && listener != null) //If the GUI is initialized, update
+            listener.boardGenerated(this);
+        Metrics.GENERATE.since(began);
     } //End generate method
 
     /**
@@ -69,47 +152,413 @@ public class Board {
     }
 
     /**
-     * Presses a tile and updates the GUI
+     * Presses a tile and updates the listener
      * @param row The row of the tile to press
      * @param col The column of the tile to press
      */
-    public void press(int row, int col) { //Validation (should be in bounds)
+    public void press(int row, int col) {
+        long began = Metrics.start();
+        changedCount = 0; //Only this press's tiles
+        apply(row, col);
+        if(listener != null) //Updates the GUI and the move
+            listener.tilePressed(this, row, col);
+        Metrics.PRESS.since(began);
+    }
+
+    /**
+     * Presses a batch of tiles, updating the listener once at the end
+     * @param moves The presses (row * size + col), in order
+     */
+    public void pressAll(int[] moves) {
+        pressAll(IntStream.of(moves));
+    }
+
+    /**
+     * Presses a stream of tiles, updating the listener once at the end
+     * (if a press is invalid, the ones before it still count)
+     * @param moves The presses (row * size + col), in order
+     */
+    public void pressAll(IntStream moves) {
+        int count = 0, last = 0; //Presses applied, and the last of them
+        changedCount = 0; //Every press in the batch adds its tiles
+        try { //Apply everything, with no listener calls in between
+            for(PrimitiveIterator.OfInt it = moves.iterator(); it.hasNext(); count++) {
+                int move = it.nextInt();
+                if(move < 0 || move >= size * size) //Validation (should be on the board)
+                    throw new InvalidParameterException("Invalid move received");
+                apply(move / size, move % size);
+                last = move;
+            } //End move loop
+        } finally { //One notification for the whole batch
+            if(listener != null && count > 0)
+                listener.movesPressed(this, count, last / size, last % size);
+        } //End batch
+    }
+
+    /**
+     * Presses up to 64 tiles of a row at once, updating the listener
+     * once (black can't be in or next to the row; see State.pressWord)
+     * @param row The row to press
+     * @param word Which 64 columns of the row (column word * 64 + bit)
+     * @param mask The columns to press
+     */
+    public void pressWord(int row, int word, long mask) {
+        if(row < 0 || row >= size) //Validation (should be in bounds)
+            throw new InvalidParameterException("Invalid tile location received");
+        state.pressWord(row, word, mask);
+        cancelHint();
+        if(Metrics.ENABLED)
+            Metrics.PRESSES.add(Long.bitCount(mask));
+        for(long left = mask; left != 0; left &= ~Long.highestOneBit(left)) //Right to left
+            record((row * size + word * 64 + 63 - Long.numberOfLeadingZeros(left)) << 3 | PLAIN);
+        changedCount = -1; //Whole words aren't tracked tile by tile
+        if(listener != null && mask != 0) //Reports the lowest column as the last press
+            listener.movesPressed(this, Long.bitCount(mask), row,
+                    word * 64 + Long.numberOfTrailingZeros(mask));
+    }
+
+    /**
+     * Helper method used to press a tile and track what changed
+     * @param row The row of the tile to press
+     * @param col The column of the tile to press
+     */
+    private void apply(int row, int col) { //Validation (should be in bounds)
         if(row < 0 || row >= size || col < 0 || col >= size) //(SIZE is 1 over)
             throw new InvalidParameterException("Invalid tile location received");
-        tiles[row][col].press(); //If validation fails, error out, else press the tile
-        gui.update(this, false); //Updates the GUI
-        gui.setMove(size, row, col); //Updates the move
+        int move = row * size + col;
+        cancelHint(); //The hint was for the old position
+        if(Metrics.ENABLED)
+            Metrics.PRESSES.increment();
+        track(move);
+        record(move << 3 | code(move, state.getBlack()));
+        state.press(row, col); //If validation fails, error out, else press the tile
+    }
+
+    /**
+     * Helper method used to add the tiles a press changes to the
+     * changed tiles (giving up once a batch has too many to track)
+     * @param move The press (row * size + col)
+     */
+    private void track(int move) {
+        int row = move / size, col = move % size;
+        if(changedCount < 0) //Already untracked
+            return;
+        if(changedCount + 5 > 5 * TRACKED) { //Too many to track, so say any tile may have changed
+            changedCount = -1;
+            return;
+        } //End limit check
+        if(changedCount + 5 > changed.length) //Grow the changed tiles if full
+            changed = Arrays.copyOf(changed, changed.length * 2);
+        if(move != state.getBlack()) { //Pressing black changes nothing, anything else changes the plus
+            changed[changedCount++] = move;
+            if(row > 0) changed[changedCount++] = move - size;
+            if(row < size - 1) changed[changedCount++] = move + size;
+            if(col > 0) changed[changedCount++] = move - 1;
+            if(col < size - 1) changed[changedCount++] = move + 1;
+        } //End change tracking
+    }
+
+    /**
+     * Helper method used to find a press's history code
+     * @param move The press (row * size + col)
+     * @param black Where black is before the press
+     * @return PLAIN, BLACK, or SWAP plus the side black is on (0-3)
+     */
+    private int code(int move, int black) {
+        if(move == black)
+            return BLACK;
+        if(black == move - size && move >= size) return SWAP; //Above
+        if(black == move + size && move < size * (size - 1)) return SWAP + 1; //Below
+        if(black == move - 1 && move % size != 0) return SWAP + 2; //Left
+        if(black == move + 1 && move % size != size - 1) return SWAP + 3; //Right
+        return PLAIN;
+    }
+
+    /**
+     * Helper method used to find where black was before a press
+     * @param entry The press's history entry
+     * @return Black's index before the press
+     */
+    private int from(int entry) {
+        int move = entry >>> 3;
+        switch(entry & 7) {
+            case BLACK: return move;
+            case SWAP: return move - size;
+            case SWAP + 1: return move + size;
+            case SWAP + 2: return move - 1;
+            case SWAP + 3: return move + 1;
+            default: return state.getBlack(); //Plain presses leave black alone
+        } //End code switch
+    }
+
+    /**
+     * Undoes the last press, exactly and in O(1)
+     * @return Whether there was a press to undo
+     */
+    public boolean undo() {
+        if(historyCount == 0)
+            return false; //Nothing to undo
+        cancelHint();
+        int entry = history[--historyCount], move = entry >>> 3;
+        state.unpress(move / size, move % size, from(entry));
+        changedCount = 0;
+        track(move); //The same tiles change back
+        if(listener != null)
+            listener.tilePressed(this, move / size, move % size);
+        return true;
+    }
+
+    /**
+     * Redoes the last undone press (or moved-back-past press)
+     * @return Whether there was a press to redo
+     */
+    public boolean redo() {
+        if(historyCount == historyEnd)
+            return false; //Nothing to redo
+        cancelHint();
+        int move = history[historyCount++] >>> 3;
+        changedCount = 0;
+        track(move);
+        state.press(move / size, move % size);
+        if(listener != null)
+            listener.tilePressed(this, move / size, move % size);
+        return true;
+    }
+
+    /**
+     * Get method to access the last press made
+     * @return The press (row * size + col), or -1 if there's none
+     */
+    public int getLastMove() {
+        return historyCount == 0 ? -1 : history[historyCount - 1] >>> 3;
+    }
+
+    /**
+     * Helper method used to add a press to the history, dropping
+     * any presses that could have been moved forward to
+     * @param move The press (row * size + col)
+     */
+    private void record(int move) {
+        if(historyCount == history.length) //Grow the history if full
+            history = Arrays.copyOf(history, historyCount * 2);
+        history[historyCount++] = move;
+        historyEnd = historyCount;
+        recorded = Math.min(recorded, historyCount - 1); //Anything past here is new
+    }
+
+    /**
+     * Saves the board's start and history (up to the current press)
+     * @param file Where to save
+     * @throws IOException If the file can't be written
+     */
+    public void save(Path file) throws IOException {
+        Recording.save(file, seed, start, moves(historyCount), historyCount);
+    }
+
+    /**
+     * Loads a saved session, ending up after its last press
+     * (only the presses near the end are replayed)
+     * @param file The recording to load (same size as the board)
+     * @throws IOException If the file can't be read
+     */
+    public void load(Path file) throws IOException {
+        Recording loaded = new Recording(file);
+        if(loaded.getSize() != size) //Only same-size recordings make sense
+            throw new InvalidParameterException("Recording size mismatch received");
+        int[] moves = loaded.getMoves();
+        loaded.seek(start, 0);
+        recording = loaded;
+        history = Arrays.copyOf(moves, Math.max(16, moves.length));
+        int black = start.getBlack(); //Only black has to be followed to code the presses
+        for(int i = 0; i < moves.length; i++) {
+            int code = code(moves[i], black);
+            history[i] = moves[i] << 3 | code;
+            if(code >= SWAP)
+                black = moves[i]; //Black moved to the pressed tile
+        } //End coding loop
+        historyEnd = recorded = moves.length;
+        seed = loaded.getSeed();
+        seek(historyEnd);
+    }
+
+    /**
+     * Moves to another point in the history, from the nearest
+     * recording checkpoint if there is one (new presses drop
+     * any history past the current press)
+     * @param move How many presses in (0 is the start)
+     */
+    public void seek(int move) {
+        if(move < 0 || move > historyEnd) //Validation (should be in the history)
+            throw new InvalidParameterException("Invalid move received");
+        cancelHint();
+        int from = 0; //Presses already made by the restored state
+        if(recording != null) { //Use the recording as far as it matches
+            from = Math.min(move, recorded);
+            recording.seek(state, from);
+        } else state.copyFrom(start);
+        for(int i = from; i < move; i++) {
+            int press = history[i] >>> 3;
+            state.press(press / size, press % size);
+        } //End replay loop
+        historyCount = move;
+        changedCount = -1; //Any tile may have changed
+        if(listener != null)
+            listener.boardRestored(this);
+    }
+
+    /**
+     * Get method to access the history
+     * @return Every press in the history (row * size + col), in order
+     */
+    public int[] getHistory() {
+        return moves(historyEnd);
+    }
+
+    /**
+     * Helper method used to strip the codes off history entries
+     * @param count How many entries to read
+     * @return The presses (row * size + col), in order
+     */
+    private int[] moves(int count) {
+        int[] moves = new int[count];
+        for(int i = 0; i < count; i++)
+            moves[i] = history[i] >>> 3;
+        return moves;
+    }
+
+    /**
+     * Get method to access the history's length
+     * @return How many presses there are to move through
+     */
+    public int getHistoryLength() {
+        return historyEnd;
+    }
+
+    /**
+     * Get method to access where the board is in its history
+     * @return How many presses have been made
+     */
+    public int getMoveCount() {
+        return historyCount;
+    }
+
+    /**
+     * Get method to access the seed
+     * @return The seed the board was made from
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get method to access the tiles changed by the last press or
+     * batch (5 or fewer a press: the tile, its neighbors, and black
+     * if it moved; batches of more than 64 presses aren't tracked)
+     * @return Their indexes (row * size + col, possibly repeated),
+     * or null if any tile may have changed
+     */
+    public int[] getChanged() {
+        return changedCount < 0 ? null : Arrays.copyOf(changed, changedCount);
+    }
+
+    /**
+     * Finds a press that starts a solution: a shortest one from the
+     * distance table if there is one, else from the transposition
+     * cache, else by solving (optimally for small boards) and caching
+     * every position along the way, so following hints is O(1)
+     * @return The press as row * size + col, or -1 if solved
+     * @throws IllegalStateException If no solution was found (the
+     * thread was interrupted, or the heuristic failed)
+     */
+    public int hint() {
+        if(state.isSolved())
+            return -1; //Nothing to hint at
+        DistanceTable table = DistanceTable.forSize(size);
+        if(table != null) //Exact, and just a few lookups
+            return table.nextPress(state);
+        TranspositionCache cache = TranspositionCache.forSize(size);
+        int move = cache.getMove(state);
+        if(move >= 0) //Solved from here (or a transposition) before
+            return move;
+        int[] plan = size <= OptimalSolver.MAX_SIZE ? OptimalSolver.forSize(size).solve(state)
+                : Solver.plan(this, null, false, false); //(Shortening big plans costs more than it helps)
+        if(plan == null || plan.length == 0) //Not solved, so -1 would be wrong
+            throw new IllegalStateException("No hint found");
+        cache.putAll(state, plan);
+        return plan[0];
+    }
+
+    /**
+     * Starts finding a press that starts a solution, off the calling
+     * thread and within a time budget, giving the best press found
+     * by then (any press, hint or undo cancels it, so the answer
+     * never comes for a position the board has left)
+     * @param budget How long to search before answering (ms)
+     * @return The press as row * size + col (-1 if solved), once found
+     * (completed exceptionally if none could be)
+     */
+    public CompletableFuture<Integer> requestHint(long budget) {
+        cancelHint(); //Only the newest hint matters
+        hintSearch = HintSearch.start(this, budget);
+        return hintSearch.getResult();
+    }
+
+    /**
+     * Cancels the hint being searched for, if any
+     */
+    public void cancelHint() {
+        if(hintSearch != null) {
+            hintSearch.cancel();
+            hintSearch = null;
+        } //End cancel
     }
 
     /**
      * Checks the board for being solved, meaning all
-     * tiles (except the black tile) are the same state
+     * tiles (except the black tile) are the same state.
+     * This is a pure query, so it can be called freely.
      * @return Whether the board is solved
      */
     public boolean isSolved() {
-        int first = tiles[0][0].getState();
-        if(first == 0) //First non-black state
-            first = tiles[0][1].getState();
-        //All tiles must match first or be the black tile to solve
-        for(int row = 0; row < size; row++) {
-            for(int col = 0; col < size; col++) {
-                int current = tiles[row][col].getState();
-                if(current != first && current != 0)
-                    return false; //Invalid tile for solving
-            } //End column-counting loop
-        } //End row-counting loop
-        gui.stopSolving(); //Stops solver
-        return true; //All tiles valid for solving
-    }
-
-    /**
-     * Get method to access all tiles
+        long began = Metrics.start();
+        boolean solved = state.isSolved(); //O(1) from the running yellow count
+        Metrics.SOLVED.since(began);
+        return solved;
+    }
+
+    /**
+     * Get method to access all tiles (views are made on first use)
      * @return The full board of tiles
      */
     public Tile[][] getTiles() {
+        if(tiles == null) { //Views never change, so make them once
+            tiles = new Tile[size][size];
+            for(int row = 0; row < size; row++) {
+                for(int col = 0; col < size; col++)
+                    tiles[row][col] = new Tile(this, row, col);
+            } //End row-counting loop
+        } //End view creation
         return tiles;
     }
 
+    /**
+     * Get method to access the packed state engine
+     * @return The board's state
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Get method to access one light's state
+     * @param row The row of the light
+     * @param col The column of the light
+     * @return 1=yellow, -1=blue, 0=black
+     */
+    public int getState(int row, int col) {
+        return state.get(row, col);
+    }
+
     /**
      * Get method to access size
      * @return The board's size
@@ -0,0 +1,39 @@
+package app;
+
+/**
+ * The BoardListener interface lets something (like the GUI)
+ * follow a board's changes. Boards work fine without one,
+ * which is how batch runs and servers use them.
+ */
+public interface BoardListener {
+    /**
+     * Called after the board is regenerated
+     * @param board The board that changed
+     */
+    void boardGenerated(Board board);
+
+    /**
+     * Called after a tile on the board is pressed
+     * @param board The board that changed
+     * @param row The row of the pressed tile
+     * @param col The column of the pressed tile
+     */
+    void tilePressed(Board board, int row, int col);
+
+    /**
+     * Called once after a whole batch of presses, instead of
+     * after each one (every tile may have changed)
+     * @param board The board that changed
+     * @param count How many presses were made
+     * @param row The row of the last pressed tile
+     * @param col The column of the last pressed tile
+     */
+    void movesPressed(Board board, int count, int row, int col);
+
+    /**
+     * Called after the board jumps to another point in its
+     * history (from loading or seeking)
+     * @param board The board that changed
+     */
+    void boardRestored(Board board);
+}
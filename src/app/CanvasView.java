@@ -0,0 +1,150 @@
+package app;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+import java.util.function.BiConsumer;
+
+/**
+ * The CanvasView class draws a board on a single canvas, for
+ * boards too big for one button per tile. Only tiles inside the
+ * viewport are drawn. Scrolling zooms around the mouse, dragging
+ * pans, and clicking presses the tile under the mouse.
+ */
+public class CanvasView extends Pane {
+    private static final double MIN_TILE = 3; //Smallest tile (px), caps tiles drawn per frame
+    private static final double MAX_TILE = 64; //Biggest tile (px)
+    private static final double ZOOM = 1.25; //Zoom per scroll step
+    private final BiConsumer<Integer, Integer> press; //Called with (row, col)
+    private final GraphicsContext graphics;
+    private final Color[] colors;
+    private final Canvas canvas;
+    private final Board board;
+    private double scale; //Tile size (px)
+    private double offsetX, offsetY; //Board pixel at the canvas's top-left
+    private double dragX, dragY; //Last mouse position while dragging
+    private int hinted = -1; //Outlined tile (row * size + col), or -1 for none
+
+    /**
+     * Sets up the canvas, fitted to the board as well as possible
+     * @param board The board to draw
+     * @param width The canvas's width and height (px)
+     * @param colors Colors by state + 1 (blue, black, yellow)
+     * @param press What to do when a tile is clicked
+     */
+    public CanvasView(Board board, double width, Color[] colors, BiConsumer<Integer, Integer> press) {
+        this.board = board;
+        this.colors = colors;
+        this.press = press;
+        canvas = new Canvas(width, width);
+        graphics = canvas.getGraphicsContext2D();
+        getChildren().add(canvas);
+        setPrefSize(width, width);
+        scale = Math.max(width / board.getSize(), MIN_TILE);
+
+        canvas.setOnScroll(event -> { //Zoom, keeping the tile under the mouse still
+            if(event.getDeltaY() == 0) { //Sideways scrolling (trackpads), so pan instead
+                offsetX -= event.getDeltaX();
+                paintAll();
+                return;
+            } //End sideways check
+            double old = scale;
+            scale = Math.min(MAX_TILE, Math.max(Math.max(width / board.getSize(), MIN_TILE),
+                    event.getDeltaY() > 0 ? scale * ZOOM : scale / ZOOM));
+            offsetX = (offsetX + event.getX()) * scale / old - event.getX();
+            offsetY = (offsetY + event.getY()) * scale / old - event.getY();
+            paintAll();
+        }); //End zoom
+        canvas.setOnMousePressed(event -> {
+            dragX = event.getX();
+            dragY = event.getY();
+        }); //End drag start
+        canvas.setOnMouseDragged(event -> { //Pan
+            offsetX -= event.getX() - dragX;
+            offsetY -= event.getY() - dragY;
+            dragX = event.getX();
+            dragY = event.getY();
+            paintAll();
+        }); //End pan
+        canvas.setOnMouseClicked(event -> { //Press, unless this was the end of a drag
+            if(event.getButton() != MouseButton.PRIMARY || !event.isStillSincePress())
+                return;
+            int row = (int) ((event.getY() + offsetY) / scale);
+            int col = (int) ((event.getX() + offsetX) / scale);
+            if(row < board.getSize() && col < board.getSize())
+                press.accept(row, col);
+        }); //End press
+        paintAll();
+    }
+
+    /**
+     * Redraws every tile in the viewport
+     */
+    public void paintAll() {
+        clamp();
+        graphics.setFill(Color.GRAY); //Background past the board's edges
+        graphics.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        int size = board.getSize();
+        int firstRow = (int) (offsetY / scale), firstCol = (int) (offsetX / scale);
+        int lastRow = Math.min(size - 1, (int) ((offsetY + canvas.getHeight()) / scale));
+        int lastCol = Math.min(size - 1, (int) ((offsetX + canvas.getWidth()) / scale));
+        for(int row = firstRow; row <= lastRow; row++) {
+            for(int col = firstCol; col <= lastCol; col++)
+                fill(row, col);
+        } //End row-counting loop
+    }
+
+    /**
+     * Redraws one tile, if it's in the viewport
+     * @param row The row of the tile
+     * @param col The column of the tile
+     */
+    public void paint(int row, int col) {
+        double x = col * scale - offsetX, y = row * scale - offsetY;
+        if(x + scale > 0 && y + scale > 0 && x < canvas.getWidth() && y < canvas.getHeight())
+            fill(row, col);
+    }
+
+    /**
+     * Outlines a tile (the hinted press), clearing the old outline
+     * @param tile The tile (row * size + col), or -1 for none
+     */
+    public void setHint(int tile) {
+        int old = hinted;
+        hinted = tile;
+        if(old >= 0) //Repaint both, so only the new one is outlined
+            paint(old / board.getSize(), old % board.getSize());
+        if(tile >= 0)
+            paint(tile / board.getSize(), tile % board.getSize());
+    }
+
+    /**
+     * Helper method used to draw one tile (with a 1px gap when big enough)
+     * @param row The row of the tile
+     * @param col The column of the tile
+     */
+    private void fill(int row, int col) {
+        double gap = scale >= 8 ? 1 : 0;
+        graphics.setFill(colors[board.getState(row, col) + 1]);
+        graphics.fillRect(col * scale - offsetX, row * scale - offsetY, scale - gap, scale - gap);
+        if(row * board.getSize() + col == hinted) { //Outline the hint, inside the tile
+            graphics.setStroke(Color.RED);
+            graphics.setLineWidth(Math.max(1, scale / 8));
+            double inset = graphics.getLineWidth() / 2;
+            graphics.strokeRect(col * scale - offsetX + inset, row * scale - offsetY + inset,
+                    scale - gap - 2 * inset, scale - gap - 2 * inset);
+        } //End hint outline
+    }
+
+    /**
+     * Helper method used to keep the viewport on the board
+     */
+    private void clamp() {
+        double max = board.getSize() * scale;
+        offsetX = Math.max(0, Math.min(offsetX, max - canvas.getWidth()));
+        offsetY = Math.max(0, Math.min(offsetY, max - canvas.getHeight()));
+    }
+}
@@ -0,0 +1,189 @@
+package app;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidParameterException;
+
+/**
+ * The DistanceTable class reads exact solve distances from a
+ * file made by TableGenerator. Every state of a size gets 4 bits,
+ * and the file is memory-mapped, so opening it costs nothing and
+ * a lookup is one read. Files live in the "lights.tables" folder.
+ */
+public class DistanceTable {
+    public static final int MAX_SIZE = 5; //Biggest size with a feasible table
+    public static final int MAGIC = 0x464D4C44; //"FMLD"
+    public static final int HEADER = 8; //Magic, then size
+    public static final int UNKNOWN = 15; //Nibble for "not reached"
+    private static final DistanceTable[] tables = new DistanceTable[MAX_SIZE + 1];
+    private final MappedByteBuffer buffer;
+    private final long[] masks; //Press masks by index
+    private final int cells;
+    private final int size;
+
+    /**
+     * Gets the table for a size, mapping its file on first use
+     * @param size The size of the board
+     * @return The table, or null if there's no file for the size
+     */
+    public static synchronized DistanceTable forSize(int size) {
+        if(size < 2 || size > MAX_SIZE) //No table could be this big
+            return null;
+        if(tables[size] == null) { //Map it if the file has been made since
+            Path file = file(size);
+            if(Files.isRegularFile(file))
+                tables[size] = new DistanceTable(size, file);
+        } //End mapping check
+        return tables[size];
+    }
+
+    /**
+     * Gets where the table for a size is stored
+     * @param size The size of the board
+     * @return The table's path
+     */
+    public static Path file(int size) {
+        return Paths.get(System.getProperty("lights.tables", "tables"), "lights" + size + ".dist");
+    }
+
+    /**
+     * Counts the states of a size: any black position, any other colors
+     * @param size The size of the board
+     * @return The number of states
+     */
+    public static long states(int size) {
+        return (long) size * size << (size * size - 1);
+    }
+
+    /**
+     * Gets a state's index: black, then colors with black's bit dropped
+     * @param bits The packed lights
+     * @param black The black tile's index
+     * @param cells The number of lights on the board
+     * @return The state's index
+     */
+    public static long index(long bits, int black, int cells) {
+        long low = bits & ((1L << black) - 1);
+        long high = bits >>> (black + 1) << black;
+        return ((long) black << (cells - 1)) | low | high;
+    }
+
+    /**
+     * Maps a table file and checks its header
+     * @param size The size of the board
+     * @param file The table's path
+     */
+    private DistanceTable(int size, Path file) {
+        this.size = size;
+        cells = size * size;
+        State blank = new State(size);
+        masks = new long[cells];
+        for(int i = 0; i < cells; i++)
+            masks[i] = blank.getMask(i);
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch(IOException e) { throw new UncheckedIOException(e); }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != size
+                || buffer.capacity() != HEADER + states(size) / 2)
+            throw new InvalidParameterException("Invalid distance table: " + file);
+    }
+
+    /**
+     * Looks up the exact distance of packed lights
+     * @param bits The packed lights
+     * @param black The black tile's index
+     * @return The fewest presses that solve it
+     */
+    public int distance(long bits, int black) {
+        long index = index(bits, black, cells);
+        int pair = buffer.get((int) (HEADER + (index >>> 1)));
+        return (index & 1) == 0 ? pair & 0xF : pair >>> 4 & 0xF;
+    }
+
+    /**
+     * Looks up the exact distance of a state
+     * @param state The state to look up
+     * @return The fewest presses that solve it
+     */
+    public int distance(State state) {
+        check(state);
+        return distance(state.getBits(), state.getBlack());
+    }
+
+    /**
+     * Finds a press that starts a shortest solution
+     * @param state The state to solve (it isn't changed)
+     * @return The press as row * size + col, or -1 if solved
+     */
+    public int nextPress(State state) {
+        check(state);
+        return nextPress(state.getBits(), state.getBlack());
+    }
+
+    /**
+     * Finds a full shortest solution by following the table down
+     * @param state The state to solve (it isn't changed)
+     * @return Moves as row * size + col, empty if already solved
+     */
+    public int[] solve(State state) {
+        check(state);
+        long bits = state.getBits();
+        int black = state.getBlack();
+        int[] moves = new int[distance(bits, black)];
+        for(int i = 0; i < moves.length; i++) { //Each step is one lookup per press
+            int move = moves[i] = nextPress(bits, black);
+            long blackBit = 1L << black;
+            bits ^= masks[move] & ~blackBit;
+            if((masks[move] & blackBit) != 0) { //Black swap
+                long moveBit = 1L << move;
+                bits = (bits & moveBit) != 0 ? (bits | blackBit) & ~moveBit : bits;
+                black = move;
+            } //End swap
+        } //End step loop
+        return moves;
+    }
+
+    /**
+     * Helper method used to find a press one step closer
+     * @param bits The packed lights
+     * @param black The black tile's index
+     * @return The press, or -1 if solved
+     */
+    private int nextPress(long bits, int black) {
+        int goal = distance(bits, black) - 1;
+        if(goal < 0)
+            return -1; //Already solved
+        long blackBit = 1L << black;
+        for(int move = 0; move < cells; move++) {
+            if(move == black)
+                continue;
+            long after = bits ^ (masks[move] & ~blackBit);
+            int to = black;
+            if((masks[move] & blackBit) != 0) { //Black swap
+                long moveBit = 1L << move;
+                after = (after & moveBit) != 0 ? (after | blackBit) & ~moveBit : after;
+                to = move;
+            } //End swap
+            if(distance(after, to) == goal)
+                return move;
+        } //End move-counting loop
+        throw new IllegalStateException("Distance table is inconsistent");
+    }
+
+    /**
+     * Helper method used to make sure a state fits the table
+     * @param state The state to check
+     */
+    private void check(State state) {
+        if(state.getSize() != size)
+            throw new InvalidParameterException("State size mismatch received");
+    }
+}
@@ -1,29 +1,51 @@
 package app;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.*;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.StrokeType;
 import javafx.scene.text.Text;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
+import java.io.File;
+import java.io.IOException;
+import java.security.InvalidParameterException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.BitSet;
+import java.util.concurrent.CancellationException;
 
 /**
  * The GUI class serves as a GUI for the board.
  * It contains the main method and runs an app.
+ * (For runs without a display, see Batch.)
  */
-public class GUI extends Application {
+public class GUI extends Application implements BoardListener {
     //Width can be as big as desired, but going below ~450 may screw up the bottom panel
     //For reference, 450 is super-compact, 500 is compact, 550 is medium, 600 is cozy
-    private final double WIDTH = 600; //Window width (px), height will be 20 more
+    private final double WIDTH = 600; //Window width (px), height will be 75 more
+    private final int CANVAS_SIZE = 32; //Boards bigger than this are drawn on a canvas
     private final Color[] colors = {Color.BLUE, Color.BLACK, Color.YELLOW};
-    private GridPane center, bottom; //Color indexing and grid panes
+    private Pane center; //Tile pane (buttons or canvas)
+    private GridPane bottom; //Info pane
+    private Slider scrub; //Moves through the board's history
+    private int hinted = -1; //Hinted tile (row * size + col), or -1 for none
+    private boolean syncing = false; //Is the scrubber being moved by code?
+    private Rectangle[][] squares; //Each tile's square, for direct repainting
+    private CanvasView canvas; //Used instead of squares for big boards
+    private final BitSet dirty = new BitSet(); //Tiles waiting for a repaint
+    private boolean dirtyAll = false; //Is every tile waiting?
+    private boolean flushQueued = false; //Is a repaint already queued?
+    private boolean pending = false; //Are presses waiting to be shown?
     private boolean touched = false; //Was a tile touched yet?
+    private double rate = 1; //Auto-solve presses per second (0 = instant)
     private boolean solving = false; //For blocking input
     private Instant startTime; //For solve timer
 
@@ -35,25 +57,89 @@ public class GUI extends Application {
     @Override
     public void start(Stage stage) throws Exception {
         Board board; //Setup of main elements
-        if(getParameters().getRaw().size() == 0)
-            board = new Board(this);
-        else board = new Board(this, //Custom size?
-                Integer.parseInt(getParameters().getRaw().get(0)));
-        center = makeCenterPane(board);
+        int size = getParameters().getUnnamed().size() == 0 ? 4 //Custom size?
+                : Integer.parseInt(getParameters().getUnnamed().get(0));
+        if(getParameters().getNamed().containsKey("seed")) //Reproducible boards?
+            board = new Board(this, size,
+                    Long.parseLong(getParameters().getNamed().get("seed")));
+        else board = new Board(this, size);
+        if(getParameters().getNamed().containsKey("rate")) //Custom playback rate?
+            rate = Double.parseDouble(getParameters().getNamed().get("rate"));
         bottom = makeBottomPane(board);
+        bottom.setDisable(true); //Locked until the tiles are in
+        Pane placeholder = new Pane(); //Holds the tiles' place for the first frame
+        placeholder.setPrefSize(WIDTH, WIDTH);
         FlowPane flow = new FlowPane();
 
         //Adds the panes together and makes/sets the scene
-        flow.getChildren().addAll(center, bottom);
+        flow.getChildren().addAll(placeholder, bottom);
         Scene scene = new Scene(flow);
         stage.setScene(scene);
         if(stage.getScene() != scene)
             throw new Exception("Black magic");
         stage.setTitle("15+ Mystic Lights Puzzle");
-        board.initialize(); //End of initialization
+        Runnable tiles = () -> { //Puts the tiles in, unlocking the controls
+            center = makeCenterPane(board);
+            flow.getChildren().set(0, center);
+            stage.sizeToScene(); //In case the tiles came out bigger than their placeholder
+            bottom.setDisable(false);
+            board.initialize(); //End of initialization
+        };
+        if(Boolean.parseBoolean(getParameters().getNamed().get("eager"))) //Tiles in the first frame?
+            tiles.run(); //(The way it started before, kept to compare startup against)
+        else afterFrame(scene, tiles); //The window shows first, then the tiles go in
+        if(getParameters().getNamed().containsKey("startup")) //Timing startup?
+            timeStartup(scene, Long.parseLong(getParameters().getNamed().get("startup")));
         stage.show(); //Prepares and shows the stage
     }
 
+    /**
+     * Helper method used to run something once, right after the
+     * next frame is laid out (so that frame goes out first)
+     * @param scene The scene to watch
+     * @param task What to run
+     */
+    private void afterFrame(Scene scene, Runnable task) {
+        scene.addPostLayoutPulseListener(new Runnable() {
+            private boolean queued = false; //Only once
+            @Override
+            public void run() {
+                if(!queued) { //Run it (and stop watching) after this pulse
+                    queued = true;
+                    Platform.runLater(() -> {
+                        scene.removePostLayoutPulseListener(this);
+                        task.run();
+                    });
+                } //End queue check
+            }
+        });
+    }
+
+    /**
+     * Helper method used to time startup: prints how long after
+     * launch the first frame and the first frame with tiles came,
+     * then quits (for startup benchmarks)
+     * @param scene The scene to watch
+     * @param launched When the app was launched (ms since the epoch)
+     */
+    private void timeStartup(Scene scene, long launched) {
+        scene.addPostLayoutPulseListener(new Runnable() {
+            private long window = -1; //First frame (ms after launch)
+            private boolean reported = false;
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis() - launched;
+                if(window < 0)
+                    window = now;
+                if(center != null && !reported) { //The tiles are in this frame
+                    reported = true;
+                    System.out.printf("First frame: %d ms, tiles: %d ms%n", window, now);
+                    Platform.runLater(Platform::exit);
+                } //End report
+            }
+        });
+    }
+
     /**
      * Method used to set the "last move" text correctly
      * @param size The size of the board (usually below 27)
@@ -69,35 +155,60 @@ public class GUI extends Application {
             ((Text)move).setText("Last: C" + (col + 1) + " R" + (row + 1));
     }
 
+    /**
+     * Helper method used to press a tile from either renderer
+     * @param board The board to press
+     * @param row The row of the tile
+     * @param col The column of the tile
+     */
+    private void pressTile(Board board, int row, int col) {
+        if(!solving) { //Blocked if solving
+            if (!touched) { //If this is the first press...
+                touched = true; //Mark the board as touched...
+                Node timer = bottom.getChildren().get(2);
+                assert timer.getClass() == Text.class;
+                ((Text) timer).setText("Time: Running!");
+                startTime = Instant.now(); //and go!
+            } //And no matter what, press the tile
+            board.press(row, col);
+        } //End check for solving variable
+    }
+
+    /**
+     * Helper method used to create the central pane, picking
+     * buttons for small boards and a canvas for big ones
+     * @param board The board to link to the pane
+     * @return A pane that shows the tiles
+     */
+    private Pane makeCenterPane(Board board) {
+        if(board.getSize() > CANVAS_SIZE) { //Too many tiles for one control each
+            canvas = new CanvasView(board, WIDTH, colors,
+                    (row, col) -> pressTile(board, row, col));
+            return canvas;
+        } //Otherwise, use a grid of buttons
+        return makeButtonPane(board);
+    }
+
     /**
      * Helper method used to create the central grid pane
      * @param board The board to link to the grid pane
      * @return A grid pane with buttons for tiles
      */
-    private GridPane makeCenterPane(Board board) {
+    private GridPane makeButtonPane(Board board) {
         ToggleGroup group = new ToggleGroup();
         GridPane pane = new GridPane(); //Empty grid pane
+        squares = new Rectangle[board.getSize()][board.getSize()];
         final double sSize = WIDTH / board.getSize(); //Square size
         for(int row = 0; row < board.getSize(); row++) { //For each tile in the board...
             for(int col = 0; col < board.getSize(); col++) { //Make a square with the right size+color...
-                Rectangle square = new Rectangle(sSize, sSize, colors[board.getTiles()[row][col].getState() + 1]);
+                Rectangle square = new Rectangle(sSize, sSize, colors[board.getState(row, col) + 1]);
+                squares[row][col] = square; //Index the square for repainting...
                 ToggleButton button = new ToggleButton("", square); //Use that square to make a new button...
                 button.setPadding(new Insets(0, 0, 0, 0)); //Remove the very evil padding...
                 button.setToggleGroup(group); //Add the button to the 1 toggle group for all buttons...
                 pane.add(button, col, row); //Add the button to the pane, and set its action.
                 final int finalRow = row, finalCol = col; //(Lambdas only use finals.)
-                button.setOnAction(event -> {
-                    if(!solving) { //Blocked if solving
-                        if (!touched) { //If this is the first press...
-                            touched = true; //Mark the board as touched...
-                            Node timer = bottom.getChildren().get(2);
-                            assert timer.getClass() == Text.class;
-                            ((Text) timer).setText("Time: Running!");
-                            startTime = Instant.now(); //and go!
-                        } //And no matter what, press the tile
-                        board.press(finalRow, finalCol);
-                    } //End check for solving variable
-                }); //End button action setting
+                button.setOnAction(event -> pressTile(board, finalRow, finalCol));
             } //End column-counting loop
         } //End row-counting loop
         return pane; //Returns the now-full grid pane
@@ -133,15 +244,99 @@ public class GUI extends Application {
                 solving = true; //Begin solving
                 touched = true; //Lock timer's text
                 startTime = Instant.now(); //Set timer
-                Solver solver = new Solver(board, timer);
-                Thread solveThread = new Thread(solver::solve);
-                solveThread.start(); //Actually solve
+                boolean optimal = board.getSize() <= OptimalSolver.AUTO_SIZE //Small or tabled
+                        || DistanceTable.forSize(board.getSize()) != null; //boards are optimal
+                Thread planThread = new Thread(() -> { //Plan on a copy, off the FX thread
+                    int[] moves = Solver.plan(board,
+                            text -> Platform.runLater(() -> timer.setText(text)), optimal);
+                    Platform.runLater(() -> { //Then play it back on the FX thread
+                        if(moves == null) { //Close if it didn't solve
+                            PauseTransition pause = new PauseTransition(javafx.util.Duration.seconds(5));
+                            pause.setOnFinished(done -> System.exit(1));
+                            pause.play(); //Leave the error up for a bit first
+                            return;
+                        } //End of failure case
+                        new Playback(board, moves, rate, () -> { //Unlock input once it's done
+                            timer.setText("Input unlocked");
+                            stopSolving();
+                        }).start();
+                    });
+                });
+                planThread.setDaemon(true); //Don't hold the app open
+                planThread.start(); //Actually solve
             } //End solver action setting
         }); //Auto-solver (mid-right)
         pane.add(solve, 3, 0);
         Text move = new Text("No moves made");
         pane.add(move, 4, 0); //Move (right)
 
+        pane.getRowConstraints().add(new RowConstraints(25)); //Second row: sessions
+        FileChooser chooser = new FileChooser();
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Recordings", "*.fml"));
+        Button open = new Button("OPEN");
+        open.setPrefWidth(WIDTH / 5); //Preferred width
+        open.setOnAction(event -> {
+            File file = solving ? null : chooser.showOpenDialog(pane.getScene().getWindow());
+            if(file != null) { //Blocked if solving or cancelled
+                try { board.load(file.toPath()); }
+                catch(IOException | InvalidParameterException e) { status.setText("Can't open that"); }
+            } //End open check
+        }); //Open (bottom left)
+        pane.add(open, 0, 1);
+        Button save = new Button("SAVE");
+        save.setPrefWidth(WIDTH / 5); //Preferred width
+        save.setOnAction(event -> {
+            File file = solving ? null : chooser.showSaveDialog(pane.getScene().getWindow());
+            if(file != null) { //Blocked if solving or cancelled
+                try {
+                    board.save(file.toPath());
+                    status.setText("Session saved");
+                } catch(IOException e) { status.setText("Can't save there"); }
+            } //End save check
+        }); //Save (bottom mid-left)
+        pane.add(save, 1, 1);
+        Button undo = new Button("UNDO");
+        undo.setPrefWidth(WIDTH / 5); //Preferred width
+        undo.setOnAction(event -> {
+            if(!solving) //Blocked if solving
+                board.undo();
+        }); //Undo (bottom middle)
+        pane.add(undo, 2, 1);
+        Button redo = new Button("REDO");
+        redo.setPrefWidth(WIDTH / 5); //Preferred width
+        redo.setOnAction(event -> {
+            if(!solving) //Blocked if solving
+                board.redo();
+        }); //Redo (bottom mid-right)
+        pane.add(redo, 3, 1);
+        Button hint = new Button("HINT");
+        hint.setPrefWidth(WIDTH / 5); //Preferred width
+        hint.setOnAction(event -> {
+            if(!solving) { //Blocked if solving
+                status.setText("Thinking...");
+                long hash = board.getState().getHash(); //For dropping hints that come too late
+                board.requestHint(HintSearch.BUDGET).whenComplete((press, failure) -> //Cancelled by any press
+                        Platform.runLater(() -> {
+                            if(board.getState().getHash() != hash || failure instanceof CancellationException)
+                                return; //Moved on, or asked again
+                            if(failure != null) //The search broke, so don't leave it thinking
+                                status.setText("No hint found");
+                            else showHint(board, press);
+                        }));
+            } //End hint check
+        }); //Hint (bottom right)
+        pane.add(hint, 4, 1);
+
+        pane.getRowConstraints().add(new RowConstraints(25)); //Third row: history
+        scrub = new Slider(0, 0, 0);
+        scrub.setPrefWidth(WIDTH); //Preferred width (all the way across)
+        scrub.valueProperty().addListener((property, old, value) -> {
+            int target = (int) Math.round(value.doubleValue());
+            if(!syncing && !solving && target != board.getMoveCount())
+                board.seek(target); //Blocked if solving
+        }); //Scrubber (bottom)
+        pane.add(scrub, 0, 2, 5, 1);
+
         return pane; //Returns the now-full grid pane
     }
 
@@ -152,22 +347,218 @@ public class GUI extends Application {
         solving = false;
     }
 
+    /**
+     * Listener method called by the board after regenerating
+     * @param board The board that changed
+     */
+    @Override
+    public void boardGenerated(Board board) {
+        long began = Metrics.start();
+        dirty.clear(); //Anything queued is for the old board
+        dirtyAll = false;
+        pending = false;
+        setHint(board, -1); //The hint was for the old board
+        update(board, true);
+        syncScrub(board);
+        Metrics.REPAINT.since(began);
+    }
+
+    /**
+     * Listener method called by the board after loading or seeking
+     * @param board The board that changed
+     */
+    @Override
+    public void boardRestored(Board board) {
+        long began = Metrics.start();
+        dirty.clear(); //Anything queued is out of date
+        dirtyAll = false;
+        pending = false;
+        setHint(board, -1); //The hint was for the old position
+        paintAll(board);
+        touched = true; //Time from here on
+        startTime = Instant.now();
+        Node timer = bottom.getChildren().get(2);
+        assert timer.getClass() == Text.class;
+        ((Text) timer).setText("Time: Replaying");
+        update(board, false);
+        showMove(board);
+        syncScrub(board);
+        Metrics.REPAINT.since(began);
+    }
+
+    /**
+     * Helper method used to show the board's last press
+     * @param board The board to follow
+     */
+    private void showMove(Board board) {
+        int last = board.getLastMove();
+        if(last >= 0) //Show the last move made, if there is one
+            setMove(board.getSize(), last / board.getSize(), last % board.getSize());
+        else {
+            Node move = bottom.getChildren().get(4);
+            assert move.getClass() == Text.class;
+            ((Text) move).setText("No moves made");
+        } //End of move check
+    }
+
+    /**
+     * Helper method used to show a hint, outlining its tile
+     * @param board The board the hint is for
+     * @param move The hinted press (row * size + col), or -1 if solved
+     */
+    private void showHint(Board board, int move) {
+        Node status = bottom.getChildren().get(0);
+        assert status.getClass() == Text.class;
+        int size = board.getSize(), row = move / size, col = move % size;
+        if(move < 0) //Nothing to hint at
+            ((Text) status).setText("No hint needed");
+        else if(size < 27) //Same naming as the last move
+            ((Text) status).setText("Hint: " + (char) (col + 'a') + (row + 1));
+        else ((Text) status).setText("Hint: C" + (col + 1) + " R" + (row + 1));
+        setHint(board, move);
+    }
+
+    /**
+     * Helper method used to outline a tile (the hinted press)
+     * @param board The board to reference when outlining
+     * @param move The tile (row * size + col), or -1 for none
+     */
+    private void setHint(Board board, int move) {
+        if(move == hinted)
+            return; //Nothing to change
+        if(canvas != null) //Big boards outline on the canvas
+            canvas.setHint(move);
+        else {
+            int size = board.getSize();
+            if(hinted >= 0) //Clear the old outline...
+                squares[hinted / size][hinted % size].setStroke(null);
+            if(move >= 0) { //...and draw the new one
+                Rectangle square = squares[move / size][move % size];
+                square.setStrokeType(StrokeType.INSIDE); //Keeps the square's size
+                square.setStrokeWidth(Math.max(1, square.getWidth() / 8));
+                square.setStroke(Color.RED);
+            } //End outline
+        } //End renderer check
+        hinted = move;
+    }
+
+    /**
+     * Helper method used to keep the scrubber on the current press
+     * @param board The board to follow
+     */
+    private void syncScrub(Board board) {
+        syncing = true; //Don't seek while following
+        scrub.setMax(board.getHistoryLength());
+        scrub.setValue(board.getMoveCount());
+        syncing = false;
+    }
+
+    /**
+     * Listener method called by the board after a press
+     * @param board The board that changed
+     * @param row The row of the pressed tile
+     * @param col The column of the pressed tile
+     */
+    @Override
+    public void tilePressed(Board board, int row, int col) {
+        for(int tile : board.getChanged()) //Only the changed tiles need repainting
+            dirty.set(tile);
+        pending = true;
+        queueFlush(board);
+    }
+
+    /**
+     * Listener method called by the board after a batch of presses
+     * @param board The board that changed
+     * @param count How many presses were made
+     * @param row The row of the last pressed tile
+     * @param col The column of the last pressed tile
+     */
+    @Override
+    public void movesPressed(Board board, int count, int row, int col) {
+        int[] changed = board.getChanged();
+        if(changed == null) //Too many presses to track, so any tile may have changed
+            dirtyAll = true;
+        else for(int tile : changed) //Otherwise only the changed tiles need repainting
+            dirty.set(tile);
+        pending = true;
+        queueFlush(board);
+    }
+
+    /**
+     * Helper method used to queue one repaint for however many
+     * presses happen before it runs
+     * @param board The board to repaint
+     */
+    private void queueFlush(Board board) {
+        if(!flushQueued) { //Later presses join the queued repaint
+            flushQueued = true;
+            Platform.runLater(() -> flush(board));
+        } //End queue check
+    }
+
+    /**
+     * Helper method used to repaint everything waiting, then
+     * update the info pane once
+     * @param board The board to repaint
+     */
+    private void flush(Board board) {
+        flushQueued = false;
+        if(!pending)
+            return; //A new board already repainted everything
+        long began = Metrics.start();
+        setHint(board, -1); //The hint was for the old position
+        if(dirtyAll) //Repaints every tile...
+            paintAll(board);
+        else { //...or only the changed ones
+            for(int tile = dirty.nextSetBit(0); tile >= 0; tile = dirty.nextSetBit(tile + 1))
+                paint(board, tile / board.getSize(), tile % board.getSize());
+        } //End repaint
+        update(board, false); //Updates the GUI
+        showMove(board); //Undone presses show the press before them
+        syncScrub(board);
+        dirty.clear();
+        dirtyAll = false;
+        pending = false;
+        Metrics.REPAINT.since(began);
+    }
+
+    /**
+     * Helper method used to repaint one tile's square
+     * @param board The board to reference when painting
+     * @param row The row of the tile
+     * @param col The column of the tile
+     */
+    private void paint(Board board, int row, int col) {
+        if(canvas != null) //Big boards draw on the canvas
+            canvas.paint(row, col);
+        else squares[row][col].setFill(colors[board.getState(row, col) + 1]);
+    }
+
+    /**
+     * Helper method used to repaint every tile
+     * @param board The board to reference when painting
+     */
+    private void paintAll(Board board) {
+        if(canvas != null) //Big boards only draw the visible tiles
+            canvas.paintAll();
+        else {
+            for (int row = 0; row < board.getSize(); row++) {
+                for (int col = 0; col < board.getSize(); col++)
+                    paint(board, row, col);
+            } //End of row-counting loop
+        } //End of full repaint
+    }
+
     /**
      * Method called by the board to keep the GUI caught up
+     * (a new board repaints every tile; presses repaint their own)
      * @param board The board to reference when updating
      * @param newBoard Whether the board is brand new
      */
     public void update(Board board, boolean newBoard) {
-        for (int row = 0; row < board.getSize(); row++) { //Then, iteratively:
-            for (int col = 0; col < board.getSize(); col++) { //Get the target color...
-                int color = board.getTiles()[row][col].getState() + 1; //the toggle button...
-                Object tile = center.getChildren().toArray()[row * board.getSize() + col];
-                assert tile.getClass() == ToggleButton.class; //(1D representation of board)
-                Node square = ((ToggleButton) tile).getGraphic(); //the graphic...
-                assert square.getClass() == Rectangle.class; //and update.
-                ((Rectangle) square).setFill(colors[color]);
-            } //End of column-counting loop
-        } //End of row-counting loop
+        if(newBoard) //Every tile may have changed
+            paintAll(board);
         Node status = bottom.getChildren().get(0);
         assert status.getClass() == Text.class; //Set status text
         if(newBoard) { //If the board is brand new from generation...
@@ -194,7 +585,9 @@ public class GUI extends Application {
 
     /**
      * The main method, which launches the application
-     * @param args Command line args (size)
+     * @param args Command line args (size, then --rate=presses/sec, --seed=number,
+     *             --eager=true to build the tiles before the window shows, and
+     *             --startup=launch time in ms since the epoch to time startup and quit)
      */
     public static void main(String[] args) {
         Application.launch(args);
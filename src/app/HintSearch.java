@@ -0,0 +1,160 @@
+package app;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The HintSearch class finds a next press off the caller's thread,
+ * within a time budget. It's an anytime search: the distance table
+ * or the transposition cache answer at once if they can; otherwise
+ * the heuristic solver's first press is the starting answer, which
+ * an optimal search (small boards) or a one-press lookahead over
+ * the heuristic (bigger boards) improves until time runs out.
+ * When the budget is up, the best press found so far is given
+ * (or the first one found, if none was found in time).
+ * Above OptimalSolver.MAX_SIZE, a hint is only as good as that
+ * lookahead: it's the first press of the shortest unshortened
+ * heuristic solve that was tried, not a press on a shortest solve.
+ */
+public class HintSearch implements Runnable {
+    public static final long BUDGET = 16; //Default budget (ms), about one frame
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "Hint search");
+        thread.setDaemon(true); //Don't hold the app open
+        return thread;
+    }); //One search at a time, since a new one cancels the old
+    private final CompletableFuture<Integer> result = new CompletableFuture<>();
+    private final AtomicInteger best = new AtomicInteger(-1); //Best press so far
+    private final Board board; //Headless copy, so the search never races presses
+    private final long deadline; //When to answer (System.nanoTime)
+    private Future<?> task; //The running search, for cancelling
+    private int bestLength = Integer.MAX_VALUE; //Presses to solve after the best press
+
+    /**
+     * Starts a search for a board's next press
+     * @param board The board to hint for (copied, so it can keep changing)
+     * @param budget How long to search before answering (ms)
+     * @return The running search
+     */
+    public static HintSearch start(Board board, long budget) {
+        HintSearch search = new HintSearch(new Board(board), budget);
+        search.task = worker.submit(search);
+        CompletableFuture.delayedExecutor(budget, TimeUnit.MILLISECONDS).execute(() -> {
+            if(search.best.get() >= 0) //Answer with what's known so far
+                search.result.complete(search.best.get());
+        }); //(If nothing is known yet, the first press found answers)
+        return search;
+    }
+
+    /**
+     * Sets up a search
+     * @param board The board's copy
+     * @param budget How long to search before answering (ms)
+     */
+    private HintSearch(Board board, long budget) {
+        this.board = board;
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget);
+    }
+
+    /**
+     * Get method to access the answer
+     * @return The next press (row * size + col), or -1 if already solved
+     * (completed exceptionally if no press could be found)
+     */
+    public CompletableFuture<Integer> getResult() {
+        return result;
+    }
+
+    /**
+     * Stops the search; its answer will never come
+     */
+    public void cancel() {
+        result.cancel(false);
+        if(task != null)
+            task.cancel(true); //Interrupts any optimal search
+    }
+
+    /**
+     * Runs the search (on the worker thread), passing on anything
+     * it throws so the caller isn't left waiting for an answer
+     */
+    @Override
+    public void run() {
+        try {
+            search();
+        } catch(RuntimeException | Error e) { result.completeExceptionally(e); }
+    }
+
+    /**
+     * Helper method used to search, completing the answer
+     */
+    private void search() {
+        State state = board.getState();
+        int size = board.getSize();
+        if(result.isDone() || state.isSolved()) { //Cancelled, or nothing to hint at
+            result.complete(-1);
+            return;
+        } //End early exit
+        DistanceTable table = DistanceTable.forSize(size);
+        TranspositionCache cache = TranspositionCache.forSize(size);
+        int known = table != null ? table.nextPress(state) : cache.getMove(state);
+        if(known >= 0) { //Exact (or already worked out), so that's the answer
+            result.complete(known);
+            return;
+        } //Otherwise, start from the heuristic and improve on it
+
+        int[] plan = Solver.plan(board, null, false); //(Only shortened if small)
+        if(plan == null) { //The heuristic failed (which it shouldn't), or this was cancelled
+            result.completeExceptionally(new IllegalStateException("No hint found"));
+            return;
+        } //End failure check (-1 would say it's solved)
+        improve(plan, cache);
+        if(size <= OptimalSolver.MAX_SIZE) { //Small enough to search for the best press
+            int[] moves = OptimalSolver.forSize(size).solve(state, deadline);
+            if(moves != null)
+                improve(moves, cache);
+        } else { //Otherwise, try each first press and let the heuristic finish
+            for(int move = 0; move < size * size && !stopped(); move++) {
+                if(move == state.getBlack())
+                    continue; //Pressing black does nothing
+                Board trial = new Board(board);
+                trial.press(move / size, move % size);
+                int[] rest = Solver.plan(trial, null, false, false);
+                if(rest != null && 1 + rest.length < bestLength) { //Better, so take it
+                    int[] moves = new int[1 + rest.length];
+                    moves[0] = move;
+                    System.arraycopy(rest, 0, moves, 1, rest.length);
+                    improve(moves, cache);
+                } //End improvement check
+            } //End first press loop
+        } //End search choice
+        result.complete(best.get());
+    }
+
+    /**
+     * Helper method used to take a better solution, caching its positions
+     * @param moves The solution's presses
+     * @param cache The cache to add its positions to
+     */
+    private void improve(int[] moves, TranspositionCache cache) {
+        if(moves.length == 0 || moves.length >= bestLength)
+            return; //Not better
+        bestLength = moves.length;
+        best.set(moves[0]);
+        cache.putAll(board.getState(), moves);
+        if(System.nanoTime() > deadline) //Late, so answer as soon as there's anything
+            result.complete(moves[0]);
+    }
+
+    /**
+     * Helper method used to check whether to stop improving
+     * @return Whether time is up or the search was cancelled
+     */
+    private boolean stopped() {
+        return System.nanoTime() > deadline || Thread.currentThread().isInterrupted();
+    }
+}
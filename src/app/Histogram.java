@@ -0,0 +1,241 @@
+package app;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Histogram class records how values (usually nanoseconds)
+ * are spread out, without locks. Values go in log-linear buckets:
+ * every power of 2 is split into 16 buckets, so any value is
+ * known to within 1/16 (6.25%) however big it is, in a fixed
+ * 960 counters. Recording is a few atomic adds, so any number
+ * of threads can record at once.
+ */
+public class Histogram {
+    private static final int PRECISION = 4; //Bits of each value kept
+    private static final int SUBS = 1 << PRECISION; //Buckets per power of 2
+    private static final int BUCKETS = SUBS * (64 - PRECISION); //Enough for any positive long
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder(); //Sum of the values, for the mean
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+    private final String name;
+    private final String unit;
+
+    /**
+     * Sets up an empty histogram
+     * @param name What it measures
+     * @param unit The values' unit (for reports)
+     */
+    public Histogram(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    /**
+     * Records a value
+     * @param value The value (negatives count as 0)
+     */
+    public void record(long value) {
+        value = Math.max(0, value); //Clocks can step back
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Records the time since a start, if metrics are on
+     * @param start The start (from Metrics.start())
+     */
+    public void since(long start) {
+        if(Metrics.ENABLED) //Free when off, since the check folds away
+            record(System.nanoTime() - start);
+    }
+
+    /**
+     * Empties the histogram (values recorded meanwhile may be lost)
+     */
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    /**
+     * Takes a snapshot of the histogram, for reports
+     * @return The count, mean, percentiles and max so far
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long n = 0; //Counted from the copy, so the percentiles add up
+        for(int i = 0; i < BUCKETS; i++)
+            n += copy[i] = counts.get(i);
+        long top = max.get();
+        return new Snapshot(name, unit, n, n == 0 ? 0 : (double) total.sum() / n,
+                percentile(copy, n, 50, top), percentile(copy, n, 90, top),
+                percentile(copy, n, 99, top), top);
+    }
+
+    /**
+     * Get method to access the name
+     * @return What the histogram measures
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Helper method used to find a value's bucket
+     * @param value The value (0 or more)
+     * @return The bucket's index
+     */
+    private static int bucket(long value) {
+        if(value < SUBS) //Small values get a bucket each
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - PRECISION; //Bits dropped
+        return SUBS * shift + (int) (value >>> shift); //(The kept bits start at SUBS)
+    }
+
+    /**
+     * Helper method used to find the highest value in a bucket
+     * @param bucket The bucket's index
+     * @return The highest value that goes in it
+     */
+    private static long highest(int bucket) {
+        if(bucket < 2 * SUBS) //Exact below here
+            return bucket;
+        int shift = bucket / SUBS - 1;
+        return ((long) (bucket - SUBS * shift) << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * Helper method used to read a percentile from bucket counts
+     * @param counts The bucket counts
+     * @param n The total count
+     * @param percent The percentile (0-100)
+     * @param top The highest value recorded (buckets can overshoot it)
+     * @return The value at that percentile
+     */
+    private static long percentile(long[] counts, long n, int percent, long top) {
+        long rank = Math.max(1, (n * percent + 99) / 100), seen = 0;
+        for(int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if(seen >= rank)
+                return Math.min(highest(i), top);
+        } //End bucket loop
+        return 0; //Empty
+    }
+
+    /**
+     * The Snapshot class holds a histogram's numbers at one time
+     * (its getters make it show up as a table in JMX consoles)
+     */
+    public static class Snapshot {
+        private final String name;
+        private final String unit;
+        private final long count;
+        private final double mean;
+        private final long p50, p90, p99, max;
+
+        /**
+         * Sets up a snapshot
+         * @param name What the histogram measures
+         * @param unit The values' unit
+         * @param count How many values were recorded
+         * @param mean Their mean
+         * @param p50 Their median
+         * @param p90 Their 90th percentile
+         * @param p99 Their 99th percentile
+         * @param max The highest of them
+         */
+        public Snapshot(String name, String unit, long count, double mean,
+                        long p50, long p90, long p99, long max) {
+            this.name = name;
+            this.unit = unit;
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        /**
+         * Get method to access the name
+         * @return What the histogram measures
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get method to access the unit
+         * @return The values' unit
+         */
+        public String getUnit() {
+            return unit;
+        }
+
+        /**
+         * Get method to access the count
+         * @return How many values were recorded
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Get method to access the mean
+         * @return The values' mean
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * Get method to access the median
+         * @return The 50th percentile
+         */
+        public long getP50() {
+            return p50;
+        }
+
+        /**
+         * Get method to access the 90th percentile
+         * @return The 90th percentile
+         */
+        public long getP90() {
+            return p90;
+        }
+
+        /**
+         * Get method to access the 99th percentile
+         * @return The 99th percentile
+         */
+        public long getP99() {
+            return p99;
+        }
+
+        /**
+         * Get method to access the max
+         * @return The highest value recorded
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Formats the snapshot as one line of a report
+         * @return The line
+         */
+        @Override
+        public String toString() {
+            return String.format("%-16s count %,12d  mean %,12.0f  p50 %,10d  p90 %,10d  p99 %,10d  max %,12d %s",
+                    name, count, mean, p50, p90, p99, max, unit);
+        }
+    }
+}
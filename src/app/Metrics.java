@@ -0,0 +1,157 @@
+package app;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The Metrics class counts and times what the engine does: presses,
+ * solved checks, generation, repaints, each solver phase, and presses
+ * per solve. It's off unless the app is run with -Dfml.metrics=true,
+ * and when off every check folds away, so it costs nothing. When on,
+ * it's published over JMX as app:type=Metrics, and if
+ * -Dfml.metrics.file=path is given, a report is written there every
+ * -Dfml.metrics.interval seconds (default 10) and on exit.
+ */
+public class Metrics implements MetricsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("fml.metrics");
+    public static final LongAdder PRESSES = new LongAdder(); //Every press, batched or not
+    public static final LongAdder SOLVES = new LongAdder(); //Solves that solved
+    public static final LongAdder FAILED = new LongAdder(); //Solves that didn't
+    public static final Histogram PRESS = new Histogram("press", "ns"); //Board.press
+    public static final Histogram SOLVED = new Histogram("isSolved", "ns");
+    public static final Histogram GENERATE = new Histogram("generate", "ns");
+    public static final Histogram REPAINT = new Histogram("repaint", "ns"); //GUI updates
+    public static final Histogram ALIGN = new Histogram("solve.align", "ns"); //"Aligning black"
+    public static final Histogram RAKE = new Histogram("solve.rake", "ns"); //"Raking rows up"
+    public static final Histogram TOP = new Histogram("solve.top", "ns"); //"Working the top"
+    public static final Histogram SOLVE = new Histogram("solve", "ns"); //Whole solves
+    public static final Histogram SOLVE_PRESSES = new Histogram("solve.presses", "presses");
+    private static final Histogram[] histograms = {PRESS, SOLVED, GENERATE, REPAINT,
+            ALIGN, RAKE, TOP, SOLVE, SOLVE_PRESSES};
+    private static final Metrics instance = new Metrics();
+
+    static { //Publish, and start dumping if asked to
+        if(ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(instance,
+                        new ObjectName("app:type=Metrics"));
+            } catch(JMException e) { throw new IllegalStateException(e); }
+            String file = System.getProperty("fml.metrics.file");
+            if(file != null)
+                dumpEvery(Paths.get(file), Long.getLong("fml.metrics.interval", 10));
+        } //End setup
+    }
+
+    /**
+     * Not instantiable outside (there's one set of metrics)
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Starts timing something, if metrics are on
+     * @return The start (pass to Histogram.since), or 0 if off
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Get method to access the metrics as text
+     * @return A report with a line per counter and histogram
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        for(Map.Entry<String, Long> counter : instance.getCounters().entrySet())
+            report.append(String.format("%-16s %,d%n", counter.getKey(), counter.getValue()));
+        for(Histogram histogram : histograms)
+            report.append(histogram.snapshot()).append(System.lineSeparator());
+        return report.toString();
+    }
+
+    /**
+     * Get method to access the counters
+     * @return Each counter's value, by name
+     */
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("presses", PRESSES.sum());
+        counters.put("solves", SOLVES.sum());
+        counters.put("solves.failed", FAILED.sum());
+        return counters;
+    }
+
+    /**
+     * Get method to access the histograms
+     * @return A snapshot of each histogram, by name
+     */
+    @Override
+    public Map<String, Histogram.Snapshot> getHistograms() {
+        Map<String, Histogram.Snapshot> snapshots = new LinkedHashMap<>();
+        for(Histogram histogram : histograms)
+            snapshots.put(histogram.getName(), histogram.snapshot());
+        return snapshots;
+    }
+
+    /**
+     * Get method to access the metrics as text
+     * @return A report with a line per counter and histogram
+     */
+    @Override
+    public String getReport() {
+        return report();
+    }
+
+    /**
+     * Zeroes every counter and histogram
+     */
+    @Override
+    public void reset() {
+        PRESSES.reset();
+        SOLVES.reset();
+        FAILED.reset();
+        for(Histogram histogram : histograms)
+            histogram.reset();
+    }
+
+    /**
+     * Helper method used to write a report every so often, and on exit
+     * @param file Where to write it
+     * @param seconds Seconds between reports
+     */
+    private static void dumpEvery(Path file, long seconds) {
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "Metrics dump");
+            thread.setDaemon(true); //Don't hold the app open
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(file), seconds, seconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(file)));
+    }
+
+    /**
+     * Helper method used to write a report, writing to a temporary
+     * file first so readers never see half a report
+     * @param file Where to write it
+     */
+    private static void dump(Path file) {
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        try {
+            Files.writeString(part, report());
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch(IOException e) { } //Try again next time (an exception would stop the dumps)
+    }
+}
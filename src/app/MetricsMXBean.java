@@ -0,0 +1,32 @@
+package app;
+
+import java.util.Map;
+
+/**
+ * The MetricsMXBean interface is what JMX consoles (like JConsole
+ * or VisualVM) see of the metrics, under app:type=Metrics.
+ */
+public interface MetricsMXBean {
+    /**
+     * Get method to access the counters
+     * @return Each counter's value, by name
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Get method to access the histograms
+     * @return A snapshot of each histogram, by name
+     */
+    Map<String, Histogram.Snapshot> getHistograms();
+
+    /**
+     * Get method to access everything as text
+     * @return A report with a line per counter and histogram
+     */
+    String getReport();
+
+    /**
+     * Zeroes every counter and histogram
+     */
+    void reset();
+}
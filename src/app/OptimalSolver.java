@@ -0,0 +1,289 @@
+package app;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The OptimalSolver class finds a shortest press sequence
+ * for a packed state using IDA* search. Its heuristic is a
+ * pattern database over the top band of rows, built by a
+ * backward search over a relaxed puzzle where only the band's
+ * lights (and the black tile) are tracked. The bottom rows and
+ * both column bands reuse it by turning the board around.
+ * Solutions are cached by canonical state, so all 16 symmetric
+ * versions of a board share one entry.
+ */
+public class OptimalSolver {
+    public static final int MAX_SIZE = 5; //Biggest size that solves in practical time
+    public static final int AUTO_SIZE = 4; //Biggest size the GUI solves optimally
+    private static final int PATTERN_CELLS = 15; //Max lights per band
+    private static final int CACHE_SIZE = 1 << 12; //Solutions kept per size
+    private static final OptimalSolver[] solvers = new OptimalSolver[MAX_SIZE + 1];
+    private final int[][] views; //Board light of each band light, by view
+    private final int[][] blacks; //Band-frame black index, by view
+    private final byte[] database; //Distances to an all-yellow top band
+    private final Map<Long, int[]> solutions; //Canonical moves by canonical index
+    private final Symmetry symmetry;
+    private final long[] masks; //Press masks by index
+    private final long all; //Every light on the board
+    private final int span; //Light patterns per black position
+    private final int cells;
+    private final int size;
+
+    /**
+     * Gets the shared solver for a size, building it on first use
+     * @param size The size of the board (2 to MAX_SIZE)
+     * @return A solver with its pattern database ready
+     */
+    public static synchronized OptimalSolver forSize(int size) {
+        if(size < 2 || size > MAX_SIZE) //Bigger boards take far too long
+            throw new InvalidParameterException("Invalid optimal solver size received");
+        if(solvers[size] == null)
+            solvers[size] = new OptimalSolver(size);
+        return solvers[size];
+    }
+
+    /**
+     * Sets up masks, views and the band database
+     * @param size The size of the board
+     */
+    private OptimalSolver(int size) {
+        this.size = size;
+        cells = size * size;
+        all = size == 8 ? -1L : (1L << cells) - 1;
+        State blank = new State(size);
+        masks = new long[cells];
+        for(int i = 0; i < cells; i++)
+            masks[i] = blank.getMask(i);
+        symmetry = Symmetry.forSize(size);
+        solutions = new LinkedHashMap<>(16, 0.75f, true) { //Least recently used goes first
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+        int band = Math.min(size, PATTERN_CELLS / size); //Rows per band
+        span = 1 << (band * size);
+        int count = band >= size ? 1 : 4; //Top, bottom, left, right
+        views = new int[count][band * size];
+        blacks = new int[count][cells];
+        for(int v = 0; v < count; v++) {
+            for(int row = 0; row < size; row++) {
+                for(int col = 0; col < size; col++) { //Turn the board so this band is on top
+                    int turned = v == 0 ? row * size + col
+                            : v == 1 ? (size - 1 - row) * size + col
+                            : v == 2 ? col * size + row
+                            : (size - 1 - col) * size + row;
+                    blacks[v][row * size + col] = turned;
+                    if(turned < band * size)
+                        views[v][turned] = row * size + col;
+                } //End column-counting loop
+            } //End row-counting loop
+        } //End view loop
+        database = build();
+    }
+
+    /**
+     * Helper method used to build the top band's database. States
+     * are (black, band lights), and the goal is an all-yellow band.
+     * Lights outside the band are unknown, so a black swap that
+     * pulls one in may give either color; both count as reachable.
+     * @return Distances to the goal, indexed by black * span + lights
+     */
+    private byte[] build() {
+        long band = span - 1; //The band is the low bits, so no gathering is needed
+        byte[] table = new byte[cells * span];
+        Arrays.fill(table, Byte.MAX_VALUE);
+        for(int black = 0; black < cells; black++) //Goals: every other band light yellow
+            table[black * span + (int) (band & ~(1L << black))] = 0;
+
+        boolean changed = true; //Pull new states in a level at a time
+        for(int level = 0; changed && level < Byte.MAX_VALUE - 1; level++) {
+            changed = false;
+            for(int black = 0; black < cells; black++) {
+                long blackBit = 1L << black;
+                for(int lights = 0; lights < span; lights++) {
+                    int index = black * span + lights;
+                    if(table[index] != Byte.MAX_VALUE || (lights & blackBit) != 0)
+                        continue; //Already done, or black is lit (not a state)
+                    for(int move = 0; move < cells; move++) {
+                        if(move == black)
+                            continue;
+                        long after = lights ^ (masks[move] & band & ~blackBit);
+                        int to = black;
+                        if((masks[move] & blackBit) != 0) { //Black swap
+                            to = move;
+                            long moveBit = 1L << move;
+                            if((band & moveBit) != 0) { //Known color moves over
+                                after = (after & moveBit) != 0 ? after | (blackBit & band) : after;
+                                after &= ~moveBit;
+                            } else if((band & blackBit) != 0 //Unknown color: try lit too
+                                    && table[to * span + (int) (after | blackBit)] == level) {
+                                table[index] = (byte) (level + 1);
+                                changed = true;
+                                break;
+                            } //End swap outcome cases
+                        } //End swap handling
+                        if(table[to * span + (int) after] == level) {
+                            table[index] = (byte) (level + 1);
+                            changed = true;
+                            break;
+                        } //End outcome check
+                    } //End move-counting loop
+                } //End light-pattern loop
+            } //End black-counting loop
+        } //End level loop
+        return table;
+    }
+
+    /**
+     * Lower bound on the presses needed, taking the easier of the
+     * two goal colors (blue is just yellow with the band inverted)
+     * @param bits The packed lights
+     * @param black The black tile's index
+     * @return A bound that never overestimates
+     */
+    public int estimate(long bits, int black) {
+        int yellow = 0, blue = 0;
+        int mask = span - 1;
+        for(int v = 0; v < views.length; v++) {
+            int lights = 0;
+            if(v == 0) //The top band needs no gathering
+                lights = (int) bits & mask;
+            else for(int i = 0; i < views[v].length; i++)
+                lights |= (int) (bits >>> views[v][i] & 1L) << i;
+            int turned = blacks[v][black];
+            int base = turned * span;
+            long blackBit = 1L << turned; //Black's bit stays 0 when inverted
+            yellow = Math.max(yellow, database[base + lights]);
+            blue = Math.max(blue, database[base + (int) (~lights & mask & ~blackBit)]);
+        } //End view loop
+        return Math.min(yellow, blue);
+    }
+
+    /**
+     * Finds a shortest press sequence for a state
+     * @param state The state to solve (it isn't changed)
+     * @return Moves as row * size + col, empty if already solved
+     */
+    public int[] solve(State state) {
+        return solve(state, Long.MAX_VALUE);
+    }
+
+    /**
+     * Finds a shortest solution, giving up at a deadline or if
+     * the thread is interrupted (so searches can be cancelled)
+     * @param state The state to solve (it isn't changed)
+     * @param deadline When to give up (System.nanoTime)
+     * @return Moves as row * size + col, or null if it gave up
+     */
+    public int[] solve(State state, long deadline) {
+        if(state.getSize() != size) //Databases only fit one size
+            throw new InvalidParameterException("State size mismatch received");
+        int code = symmetry.canonical(state.getBits(), state.getBlack());
+        long bits = symmetry.bits(code, state.getBits(), state.getBlack());
+        int black = symmetry.cell(code, state.getBlack());
+        long key = DistanceTable.index(bits, black, cells);
+        int[] moves;
+        synchronized(solutions) { //Only the cache is shared between threads
+            moves = solutions.get(key);
+        } //End cache read
+        if(moves == null) { //Search the canonical state, then remember it
+            moves = search(bits, black, deadline);
+            if(moves == null)
+                return null; //Gave up, so there's nothing to remember
+            synchronized(solutions) {
+                solutions.put(key, moves);
+            } //End cache write
+        } //End cache check
+        int[] original = new int[moves.length];
+        for(int i = 0; i < moves.length; i++) //Turn the presses back
+            original[i] = symmetry.original(code, moves[i]);
+        return original;
+    }
+
+    /**
+     * Helper method used to run IDA* from a state
+     * @param bits The packed lights
+     * @param black The black tile's index
+     * @param deadline When to give up (System.nanoTime)
+     * @return A shortest solution, or null if it gave up
+     */
+    private int[] search(long bits, int black, long deadline) {
+        Search search = new Search(); //Each call gets its own, so threads never share
+        search.deadline = deadline;
+        int bound = estimate(bits, black);
+        while(true) { //Deepen until a solution fits in the bound
+            search.next = Integer.MAX_VALUE;
+            int length = search(search, bits, black, 0, bound, -1, true);
+            if(search.stopped)
+                return null;
+            if(length >= 0)
+                return Arrays.copyOf(search.path, length);
+            bound = search.next;
+        } //End deepening loop
+    }
+
+    /**
+     * Helper method used to search one bound deep. Presses that don't
+     * move black commute, so only increasing runs of them are tried,
+     * and the same press twice in a row always cancels.
+     * @param search The moves and next bound of this search
+     * @param bits The packed lights
+     * @param black The black tile's index
+     * @param depth Presses made so far
+     * @param bound The most presses allowed
+     * @param last The last press (-1 if none)
+     * @param swapped Whether the last press moved black
+     * @return The solution length, or -1 if none fits
+     */
+    private int search(Search search, long bits, int black, int depth, int bound, int last, boolean swapped) {
+        if((++search.nodes & 0xFFF) == 0 && (System.nanoTime() > search.deadline
+                || Thread.currentThread().isInterrupted()))
+            search.stopped = true; //Checked now and then, since it's not free
+        if(search.stopped)
+            return -1; //Unwind without trying anything else
+        long blackBit = 1L << black;
+        long lit = bits & all & ~blackBit;
+        if(lit == 0 || lit == (all & ~blackBit))
+            return depth; //Solved
+        int f = depth + estimate(bits, black);
+        if(f > bound) { //Too deep, so note how far over it went
+            search.next = Math.min(search.next, f);
+            return -1;
+        } //End bound check
+        for(int move = 0; move < cells; move++) {
+            if(move == black || move == last)
+                continue; //Pressing black or undoing a press is useless
+            boolean swap = (masks[move] & blackBit) != 0;
+            if(!swap && !swapped && move < last)
+                continue; //Already tried in the other order
+            long after = bits ^ (masks[move] & ~blackBit);
+            int to = black;
+            if(swap) { //Move the pressed light's color into black's spot
+                long moveBit = 1L << move;
+                after = (after & moveBit) != 0 ? (after | blackBit) & ~moveBit : after;
+                to = move;
+            } //End swap
+            search.path[depth] = move;
+            int length = search(search, after, to, depth + 1, bound, move, swap);
+            if(length >= 0)
+                return length;
+        } //End move-counting loop
+        return -1;
+    }
+
+    /**
+     * The Search class holds what one IDA* run changes as it goes
+     */
+    private static class Search {
+        private final int[] path = new int[256]; //Moves so far
+        private int next; //Smallest bound over the limit
+        private long deadline; //When to give up (System.nanoTime)
+        private long nodes; //States visited, for spacing out deadline checks
+        private boolean stopped; //Did it give up?
+    }
+}
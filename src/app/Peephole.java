@@ -0,0 +1,84 @@
+package app;
+
+import java.util.Arrays;
+
+/**
+ * The Peephole class shortens press sequences after they're made.
+ * Between two presses that swap with black, black stays put, so
+ * every press is just an XOR of its plus shape: they can be made
+ * in any order, pairs of the same press cancel, and pressing black
+ * does nothing. Each such stretch is cut down to the presses made
+ * an odd number of times, which leaves every swap (and the state
+ * it sees) exactly as it was. The result is replayed to make sure
+ * it still solves the board, and cut off as soon as it's solved.
+ */
+public class Peephole {
+    /**
+     * Not instantiable (static methods only)
+     */
+    private Peephole() {
+    }
+
+    /**
+     * Shortens a press sequence without changing where it ends up
+     * @param start The state the presses start from (left unchanged)
+     * @param moves The presses (row * size + col), in order
+     * @return A sequence that solves the board no later than the
+     * original, or the original if it didn't solve the board
+     */
+    public static int[] optimize(State start, int[] moves) {
+        int size = start.getSize();
+        State state = new State(start);
+        long[] odd = new long[(size * size + 63) >>> 6]; //Presses made an odd number of times
+        int[] stretch = new int[16]; //Presses since the last swap, in order
+        int[] kept = new int[moves.length];
+        int count = 0, stretchCount = 0;
+        for(int move : moves) {
+            int black = state.getBlack();
+            if(move == black)
+                continue; //Pressing black does nothing
+            int dRow = Math.abs(move / size - black / size), dCol = Math.abs(move % size - black % size);
+            if(dRow + dCol == 1) { //A swap ends the stretch, so keep what's left of it
+                count = keep(stretch, stretchCount, odd, kept, count);
+                stretchCount = 0;
+                kept[count++] = move;
+            } else { //Otherwise, it joins the stretch
+                if(stretchCount == stretch.length) //Grow the stretch if full
+                    stretch = Arrays.copyOf(stretch, stretchCount * 2);
+                stretch[stretchCount++] = move;
+                odd[move >>> 6] ^= 1L << move;
+            } //End swap check
+            state.press(move / size, move % size);
+        } //End move loop
+        count = keep(stretch, stretchCount, odd, kept, count);
+
+        state.copyFrom(start); //Replay to check, stopping once solved
+        for(int i = 0; i < count; i++) {
+            state.press(kept[i] / size, kept[i] % size);
+            if(state.isSolved())
+                return Arrays.copyOf(kept, i + 1);
+        } //End replay loop
+        return moves; //Never solved, so leave it alone
+    }
+
+    /**
+     * Helper method used to keep a stretch's odd presses, each
+     * where it first showed up, and reset the stretch's marks
+     * @param stretch The stretch's presses, in order
+     * @param length How many of those are in use
+     * @param odd Odd-press marks (cleared on the way)
+     * @param kept Where kept presses go
+     * @param count How many presses were kept so far
+     * @return How many presses are kept now
+     */
+    private static int keep(int[] stretch, int length, long[] odd, int[] kept, int count) {
+        for(int i = 0; i < length; i++) {
+            int move = stretch[i];
+            if((odd[move >>> 6] >>> move & 1L) != 0) { //Keep it once, then unmark it
+                kept[count++] = move;
+                odd[move >>> 6] &= ~(1L << move);
+            } //Unmarked presses cancelled out (or were kept already)
+        } //End stretch loop
+        return count;
+    }
+}
@@ -0,0 +1,55 @@
+package app;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.Arrays;
+
+/**
+ * The Playback class replays a planned solve on the FX thread,
+ * one frame at a time. Each frame presses every move that's due
+ * by then as one batch, so any rate works (even faster than the
+ * frame rate) for one repaint per frame, and nothing ever sleeps
+ * or touches the board off the FX thread.
+ */
+public class Playback extends AnimationTimer {
+    private final Runnable done; //Called once every move is pressed
+    private final Board board;
+    private final int[] moves; //Presses (row * size + col)
+    private final double rate; //Presses per second (0 or less = instant)
+    private long start = -1; //Time of the first frame (ns)
+    private int next; //Next move to press
+
+    /**
+     * Sets up a playback (call start() to begin)
+     * @param board The board to press
+     * @param moves The presses to make, in order
+     * @param rate Presses per second (0 or less for all at once)
+     * @param done What to do once every move is pressed
+     */
+    public Playback(Board board, int[] moves, double rate, Runnable done) {
+        this.board = board;
+        this.moves = moves;
+        this.rate = rate;
+        this.done = done;
+    }
+
+    /**
+     * Presses every move that's due by this frame
+     * @param now The frame's time (ns)
+     */
+    @Override
+    public void handle(long now) {
+        if(start < 0) //The first press happens on the first frame
+            start = now;
+        long due = rate <= 0 ? moves.length
+                : Math.min(moves.length, 1 + (long) ((now - start) * rate / 1e9));
+        if(next < due) { //Catch up to the clock in one batch
+            board.pressAll(Arrays.stream(moves, next, (int) due));
+            next = (int) due;
+        } //End catch-up
+        if(next == moves.length) { //All done
+            stop();
+            done.run();
+        } //End finish check
+    }
+}
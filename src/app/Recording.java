@@ -0,0 +1,206 @@
+package app;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidParameterException;
+
+/**
+ * The Recording class saves and replays a session: a board's
+ * starting state and every press made on it. Presses are stored
+ * as varints (1-3 bytes each), with a full state checkpoint every
+ * so often, and files are memory-mapped when opened. Seeking to
+ * any move restores the checkpoint before it and replays only the
+ * presses after that, so long sessions open instantly.
+ * Layout: magic, size, seed, move count, moves per checkpoint,
+ * checkpoint count, then the checkpoints (each is the move log
+ * offset, then a State), then the move log.
+ */
+public class Recording {
+    public static final int MAGIC = 0x464D4C52; //"FMLR"
+    public static final int HEADER = 32; //Magic, size, seed, moves, interval, checkpoints
+    private static final int MIN_INTERVAL = 4096; //Fewest moves between checkpoints
+    private final MappedByteBuffer buffer;
+    private final int stateBytes; //Bytes per saved state
+    private final int interval; //Moves per checkpoint
+    private final int checkpoints; //Checkpoint count (the start is the first)
+    private final int logStart; //Where the move log starts
+    private final int moves; //Move count
+    private final long seed;
+    private final int size;
+
+    /**
+     * Opens a recording, mapping the file and checking its header
+     * @param file The recording's path
+     * @throws IOException If the file can't be read
+     */
+    public Recording(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } //Mappings stay valid once the channel is closed
+        if(buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC)
+            throw new InvalidParameterException("Invalid recording: " + file);
+        size = buffer.getInt(4);
+        seed = buffer.getLong(8);
+        long count = buffer.getLong(16);
+        interval = buffer.getInt(24);
+        checkpoints = buffer.getInt(28);
+        if(size < 2 || size > Board.MAX_SIZE || count < 0 || count > Integer.MAX_VALUE
+                || interval < MIN_INTERVAL || checkpoints != count / interval + 1) //Validation (header should add up)
+            throw new InvalidParameterException("Invalid recording: " + file);
+        moves = (int) count;
+        stateBytes = new State(size).getByteSize();
+        if(interval < stateBytes) //Save never checkpoints more often than this
+            throw new InvalidParameterException("Invalid recording: " + file);
+        long start = HEADER + checkpoints * (long) (Long.BYTES + stateBytes); //(Can't overflow a long)
+        if(start > buffer.capacity() || buffer.capacity() - start < moves) //(A byte or more per move)
+            throw new InvalidParameterException("Invalid recording: " + file);
+        logStart = (int) start;
+    }
+
+    /**
+     * Saves a session, writing to a temporary file first so a
+     * failed save never leaves half a file behind
+     * @param file Where to save
+     * @param seed The seed the board was made from
+     * @param start The board's starting state (left unchanged)
+     * @param log The presses (row * size + col), in order
+     * @param count How many of those were made
+     * @throws IOException If the file can't be written
+     */
+    public static void save(Path file, long seed, State start, int[] log, int count) throws IOException {
+        int size = start.getSize();
+        int stateBytes = start.getByteSize();
+        int interval = Math.max(MIN_INTERVAL, stateBytes); //Checkpoints stay under a byte per move
+        int checkpoints = count / interval + 1;
+        ByteBuffer table = ByteBuffer.allocate(checkpoints * (Long.BYTES + stateBytes));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(count * 2);
+        State state = new State(start);
+        for(int i = 0; i <= count; i++) { //Checkpoint every so often, then log the press
+            if(i % interval == 0) {
+                table.putLong(bytes.size());
+                state.write(table);
+            } //End checkpoint
+            if(i == count)
+                break;
+            int move = log[i];
+            if(move < 0 || move >= size * size) //Validation (should be on the board)
+                throw new InvalidParameterException("Invalid move received");
+            state.press(move / size, move % size);
+            for(; move >= 0x80; move >>>= 7) //Varint: 7 bits per byte, low bits first
+                bytes.write(move & 0x7F | 0x80);
+            bytes.write(move);
+        } //End move loop
+
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(part)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(size);
+            out.writeLong(seed);
+            out.writeLong(count);
+            out.writeInt(interval);
+            out.writeInt(checkpoints);
+            out.write(table.array());
+            bytes.writeTo(out);
+        } //End writing
+        Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Puts a state where the session was after some moves
+     * @param state The state to overwrite (same size as the recording)
+     * @param move How many moves in (0 is the start)
+     */
+    public void seek(State state, int move) {
+        if(state.getSize() != size) //Only same-size states make sense
+            throw new InvalidParameterException("State size mismatch received");
+        if(move < 0 || move > moves) //Validation (should be in the session)
+            throw new InvalidParameterException("Invalid move received");
+        int checkpoint = move / interval;
+        ByteBuffer reader = buffer.duplicate();
+        reader.position(HEADER + checkpoint * (Long.BYTES + stateBytes));
+        ByteBuffer log = log(reader.getLong());
+        state.read(reader); //Restore the checkpoint, then replay the tail
+        for(int i = checkpoint * interval; i < move; i++) {
+            int press = varint(log);
+            state.press(press / size, press % size);
+        } //End replay loop
+    }
+
+    /**
+     * Reads the presses of the whole session, without replaying them
+     * @return Every press (row * size + col), in order
+     */
+    public int[] getMoves() {
+        int[] presses = new int[moves];
+        ByteBuffer log = log(0);
+        for(int i = 0; i < moves; i++)
+            presses[i] = varint(log);
+        return presses;
+    }
+
+    /**
+     * Get method to access the move count
+     * @return How many moves the session has
+     */
+    public int getMoveCount() {
+        return moves;
+    }
+
+    /**
+     * Get method to access the seed
+     * @return The seed the board was made from
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get method to access size
+     * @return The board's size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Helper method used to start reading the move log
+     * @param offset Where to start, in bytes from the log's start
+     * @return A reader at that spot
+     */
+    private ByteBuffer log(long offset) {
+        if(offset < 0 || logStart + offset > buffer.capacity()) //Validation (should be in the file)
+            throw new InvalidParameterException("Invalid recording checkpoint");
+        ByteBuffer log = buffer.duplicate();
+        log.position(logStart + (int) offset);
+        return log;
+    }
+
+    /**
+     * Helper method used to read one varint press
+     * @param log The log, at the press
+     * @return The press (row * size + col)
+     */
+    private int varint(ByteBuffer log) {
+        int press = 0;
+        for(int shift = 0; ; shift += 7) { //7 bits per byte, low bits first
+            if(!log.hasRemaining() || shift > 28) //Validation (cut off, or too long to be a press)
+                throw new InvalidParameterException("Invalid recording: move log cut off");
+            int b = log.get();
+            press |= (b & 0x7F) << shift;
+            if(b >= 0) //High bit clear, so this was the last byte
+                break;
+        } //End byte loop
+        if(press < 0 || press >= size * size) //Validation (should be on the board)
+            throw new InvalidParameterException("Invalid recorded move");
+        return press;
+    }
+}
@@ -1,43 +1,92 @@
 package app;
 
-import javafx.scene.text.Text;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
 
 /**
  * The solver class is used to auto-solve the board.
  * Note that a 2*2 board is too small for some algorithms.
+ * Small boards can instead be solved in the fewest presses.
+ * Solvers never wait: every press is recorded as it's made, so
+ * a plan can be made on a copy and played back later at any rate.
  */
 public class Solver {
-    //WARNING: Very short delays may cause errors! (20 seems to work)
-    private static final long DELAY = 1000;
+    public static final int SHORTEN_MAX = OptimalSolver.MAX_SIZE; //Biggest size worth a peephole pass
     private boolean done = false;
-    private Tile[][] tiles;
+    private boolean optimal; //Use the fewest presses?
+    private SolverListener step;
+    private State state;
     private Board board;
-    private Text step;
+    private int[] moves = new int[16]; //Presses made so far (row * size + col)
+    private int presses; //How many of those are in use
     private int size;
     private int blackRow;
     private int blackCol;
+    private long began; //When solving began (for metrics)
+    private Histogram phase; //The phase being timed, if any
+    private long phaseBegan; //When it began
+
+    /**
+     * Sets up a headless solver, with no feedback
+     * @param board The board to be used for solving
+     */
+    public Solver(Board board) {
+        this(board, null, false);
+    } //Heuristic solving by default
 
     /**
      * Sets up the board/related info, finds the black square
      * @param board The board to be used for solving
-     * @param step Text to use for feedback
+     * @param step Listener to use for feedback (null for none)
+     * @param optimal Whether to solve in the fewest presses
      */
-    public Solver(Board board, Text step) {
+    public Solver(Board board, SolverListener step, boolean optimal) {
+        if(optimal && board.getSize() > OptimalSolver.MAX_SIZE)
+            throw new InvalidParameterException("Board too big to solve optimally");
+        this.optimal = optimal;
         this.board = board; //Setup of fields
-        this.step = step; //Shows the current step
+        this.step = step != null ? step : text -> {}; //Shows the current step
         size = board.getSize(); //Stored for speed
-        tiles = board.getTiles(); //Finds black
-        for(int row = 0; row < size; row++) {
-            for(int col = 0; col < size; col++) {
-                if(tiles[row][col].getState() == 0) {
-                    blackRow = row;
-                    blackCol = col;
-                    return;
-                } //End black-checking if block
-            } //End column-counting loop
-        } //End row-counting loop
+        state = board.getState(); //Finds black
+        blackRow = state.getBlackRow();
+        blackCol = state.getBlackCol();
     } //End constructor
 
+    /**
+     * Plans a solve on a headless copy of a board, leaving the
+     * board itself untouched (so this is safe off the FX thread),
+     * then shortens the plan with the peephole pass if the board
+     * is small (on bigger ones it costs more than it saves)
+     * @param board The board to plan for
+     * @param step Listener to use for feedback (null for none)
+     * @param optimal Whether to solve in the fewest presses
+     * @return The presses (row * size + col), or null if the plan failed
+     */
+    public static int[] plan(Board board, SolverListener step, boolean optimal) {
+        return plan(board, step, optimal, board.getSize() <= SHORTEN_MAX);
+    }
+
+    /**
+     * Plans a solve on a headless copy of a board, leaving the
+     * board itself untouched (so this is safe off the FX thread)
+     * @param board The board to plan for
+     * @param step Listener to use for feedback (null for none)
+     * @param optimal Whether to solve in the fewest presses
+     * @param shorten Whether to shorten the plan with the peephole pass
+     *                (most of the time a big plan takes)
+     * @return The presses (row * size + col), or null if the plan
+     * failed or the thread was interrupted
+     */
+    public static int[] plan(Board board, SolverListener step, boolean optimal, boolean shorten) {
+        Board copy = new Board(board);
+        State start = shorten ? new State(copy.getState()) : null; //Kept for the peephole pass
+        Solver solver = new Solver(copy, step, optimal);
+        solver.solve();
+        if(!solver.isDone() || Thread.currentThread().isInterrupted())
+            return null; //Failed, or nobody wants it anymore
+        return shorten ? Peephole.optimize(start, solver.getMoves()) : solver.getMoves();
+    }
+
     /**
      * Helper method used to press a square and check for solve
      * @param row The row of the tile to be pressed
@@ -46,61 +95,170 @@ public class Solver {
      */
     private boolean pressCheck(int row, int col) {
         board.press(row, col); //Press the tile
-        sleep(); //Sleep after all presses
+        record(row * size + col); //Count it
         return done = board.isSolved();
     } //Could get lucky
 
     /**
-     * Helper method used to wait and handle any interruptions
+     * Helper method used to record a press
+     * @param move The press (row * size + col)
      */
-    private void sleep() {
-        try { Thread.sleep(DELAY); } //Try to sleep...
-        catch (InterruptedException ignored) { System.exit(1); }
-    } //If interrupted, end the entire program with an exit status of 1
+    private void record(int move) {
+        if(presses == moves.length) //Grow the record if full
+            moves = Arrays.copyOf(moves, presses * 2);
+        moves[presses++] = move;
+    }
 
     /**
-     * Helper method used to finish solving, or close if unsolved
+     * Helper method used to rake a whole row up at once, a word
+     * of 64 lights at a time. Each wrong light in the row is fixed
+     * by pressing the one above it, which only touches rows far
+     * from black (black is in the top row), so every press in a
+     * word can be made at once. Presses are recorded right to left,
+     * the same as raking one light at a time.
+     * @param row The row to rake (3 or more)
+     * @param goal The color being raked to
+     * @return Whether the board is solved after the row
+     */
+    private boolean rakeRow(int row, int goal) {
+        int count = state.getRowWords();
+        for(int word = count - 1; word >= 0; word--) { //Right to left
+            long wrong = state.getWord(row, word);
+            if(goal == 1) { //Looking for blue, so flip and trim to the row
+                long valid = word == count - 1 && (size & 63) != 0 ? (1L << (size & 63)) - 1 : -1L;
+                wrong = ~wrong & valid;
+            } //End goal check
+            if(wrong == 0)
+                continue; //Nothing to fix here
+            board.pressWord(row - 1, word, wrong);
+            for(long left = wrong; left != 0; left &= ~Long.highestOneBit(left))
+                record((row - 1) * size + word * 64 + 63 - Long.numberOfLeadingZeros(left));
+        } //End word loop
+        return done = board.isSolved();
+    } //Lucky solves are only caught between rows
+
+    /**
+     * Helper method used to finish solving, or report if unsolved
      */
     private void finish() {
-        if(!done) { //Close if it didn't solve
-            step.setText("ERROR: CLOSING");
-            for(int i = 0; i < 5; i++)
-                sleep(); //5* delay
-            System.exit(1);
-        } else step.setText("Input unlocked");
-    } //Unlock input if it did solve (which it should)
+        endPhase();
+        if(Metrics.ENABLED) { //Count the solve (and how it went)
+            (done ? Metrics.SOLVES : Metrics.FAILED).increment();
+            Metrics.SOLVE.since(began);
+            if(done)
+                Metrics.SOLVE_PRESSES.record(presses);
+        } //End metrics
+        if(!done) //Report if it didn't solve (the caller decides what to do)
+            step.stepChanged("ERROR: CLOSING");
+        else step.stepChanged("Solved: " + presses + " presses");
+    } //Report the count if it did solve (which it should)
+
+    /**
+     * Helper method used to start a phase of the solve, reporting it
+     * and timing it (ending the one before it)
+     * @param text The phase's name, as reported
+     * @param timer Where its time goes
+     */
+    private void phase(String text, Histogram timer) {
+        endPhase();
+        step.stepChanged(text);
+        if(Metrics.ENABLED) {
+            phase = timer;
+            phaseBegan = System.nanoTime();
+        } //End timing
+    }
+
+    /**
+     * Helper method used to end the phase being timed, if any
+     */
+    private void endPhase() {
+        if(Metrics.ENABLED && phase != null) {
+            phase.since(phaseBegan);
+            phase = null;
+        } //End timing
+    }
+
+    /**
+     * Checks whether the last solve() left the board solved
+     * @return Whether the board was solved
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Get method to access the press count
+     * @return How many presses solving took
+     */
+    public int getPresses() {
+        return presses;
+    }
+
+    /**
+     * Get method to access the presses made
+     * @return Each press (row * size + col), in order
+     */
+    public int[] getMoves() {
+        return Arrays.copyOf(moves, presses);
+    }
 
     /**
      * Helper method used by solve() when the board size is 2
      * (The algorithm is different thanks to small size)
      */
     private void solve2() { //Step 1: get state diagonal to black
-        int dState = tiles[1 - blackRow][1 - blackCol].getState();
-        step.setText("2*2: Memorized"); //Step 2: check side of black
-        sleep(); //Step 3: cover the three cases of a wrong light
-        if(tiles[1 - blackRow][blackCol].getState() != dState) {
+        int dState = state.get(1 - blackRow, 1 - blackCol);
+        step.stepChanged("2*2: Memorized"); //Step 2: check side of black
+        //Step 3: cover the three cases of a wrong light
+        if(state.get(1 - blackRow, blackCol) != dState) {
             if(!pressCheck(blackRow, 1 - blackCol)) //2 of 3 cases
                 pressCheck(1 - blackRow, 1 - blackCol);
         } else pressCheck(1 - blackRow, blackCol); //3rd case
         finish(); //Finish the solve
     }
 
+    /**
+     * Helper method used by solve() in optimal mode
+     * (Every press is planned before the first one)
+     */
+    private void solveOptimal() {
+        DistanceTable table = DistanceTable.forSize(size);
+        step.stepChanged(table != null ? "Looking up" : "Searching");
+        int[] moves = table != null ? table.solve(state) //Exact table if there is one
+                : OptimalSolver.forSize(size).solve(state);
+        if(moves == null) { //Only if the search was interrupted
+            finish(); //Report it unsolved
+            return;
+        } //End interruption check
+        step.stepChanged("Optimal: " + moves.length + " presses");
+        for(int move : moves) { //Play the planned presses
+            if(pressCheck(move / size, move % size))
+                break; //Stop early if solved
+        } //End playback loop
+        finish(); //Finish the solve
+    }
+
     /**
      * Main public-facing method for solving any size board
      */
     public void solve() {
         if(board.isSolved()) { //Don't double-solve
-            step.setText("Already solved");
-            return; //Input unlocks on check
+            step.stepChanged("Already solved");
+            done = true; //Nothing to do
+            return; //Input unlocks on return
         } //End already-solved check
-        step.setText("Solving board");
-        sleep(); //Sleep to show message
+        step.stepChanged("Solving board");
+        began = Metrics.start();
+        if(optimal) { //Fewest presses mode
+            solveOptimal(); //Search, then play
+            return; //End after playing the plan
+        } //If it's not optimal, use the usual algorithms
         if(size == 2) { //Special case
             solve2(); //Separate algorithm
             return; //End after solving the 2*2
         } //If it's not a 2*2, use the main algorithm
 
-        step.setText("Aligning black");
+        phase("Aligning black", Metrics.ALIGN);
         //Step 1: move black to top-left corner for consistency
         while(!done && blackRow != 0) { //Move up first
             pressCheck(blackRow - 1, blackCol);
@@ -110,17 +268,27 @@ public class Solver {
             blackCol--; } //End of moving black left
         if(done) { finish(); return; } //Finish if done by luck
 
-        step.setText("Raking rows up");
+        phase("Raking rows up", Metrics.RAKE);
         //Step 2: move all the off-color lights up to the top
         int goal = 0; //Sign = frequenter last row color
-        Tile[] lastRow = tiles[size - 1];
-        for(Tile tile : lastRow) {
-            goal += tile.getState();
+        for(int col = 0; col < size; col++) {
+            goal += state.get(size - 1, col);
         } //Goal -1 if negative, else 1
         goal = goal < 0 ? -1 : 1; //For all but the top row...
         for(int row = size - 1; row > 0; row--) { //Go right to left
+            if(Thread.currentThread().isInterrupted()) { //Stop if cancelled (a row is quick)
+                finish(); //Report it unsolved
+                return;
+            } //End interruption check
+            if(row >= 3) { //Far from black, so rake the row a word at a time
+                if(rakeRow(row, goal)) {
+                    finish(); //Finish if solved
+                    return;
+                } //End of word rake solve check
+                continue; //On to the next row up
+            } //Rows 1 and 2 can move black, so go a light at a time
             for(int col = size - 1; col >= 0; col--) {
-                if(tiles[row][col].getState() != goal) {
+                if(state.get(row, col) != goal) {
 
                     //If a tile is the wrong state, rake it up
                     if(row == 1 && col == blackCol) {
@@ -150,18 +318,18 @@ public class Solver {
             } //End of column-counting loop
         } //End of row-counting loop
 
-        step.setText("Working the top");
+        phase("Working the top", Metrics.TOP);
         //Step 3: solve the top row w/ back-and-forth movements
         //This step should ALWAYS solve the board if things go right
         boolean workLeft = true; //Stores potential of unfinished "work"
         int offset = 0; //Stores offset from black column to toggle column
         while(workLeft) { //While the top row could still have work to do...
             workLeft = false; //Assume there's nothing until something shows up
-            if(blackCol != 0 && tiles[0][blackCol - 1].getState() != goal) {
+            if(blackCol != 0 && state.get(0, blackCol - 1) != goal) {
                 //If the tile to the left is of the wrong state...
                 workLeft = true; //That tile must be changed
                 offset = -1; //Use an offset of -1 to go left
-            } else if(blackCol != size - 1 && tiles[0][blackCol + 1].getState() != goal) {
+            } else if(blackCol != size - 1 && state.get(0, blackCol + 1) != goal) {
                 //Otherwise, if the tile to the right is of the wrong state...
                 workLeft = true; //That tile must be changed
                 offset = 1; //Use an offset of +1 to go right
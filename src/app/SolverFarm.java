@@ -0,0 +1,151 @@
+package app;
+
+import java.security.InvalidParameterException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The SolverFarm class solves big batches of independent boards
+ * on every core. Work is split by fork-join (so idle workers steal),
+ * each split gets its own split random stream, and each worker
+ * thread reuses one headless board. Workers share nothing but the
+ * results array, which they write in separate slices.
+ */
+public class SolverFarm {
+    private static final int LEAF = 64; //Boards per task that isn't split further
+    private final ThreadLocal<Board> boards; //One reusable board per worker
+    private final ForkJoinPool pool;
+    private final boolean optimal;
+
+    /**
+     * Sets up a farm for one size of board
+     * @param size The size of the boards
+     * @param optimal Whether to solve in the fewest presses
+     * @param threads How many workers to use
+     */
+    public SolverFarm(int size, boolean optimal, int threads) {
+        if(size < 2) //If size is too small, error out
+            throw new InvalidParameterException("Board size below 2 received");
+        this.optimal = optimal;
+        boards = ThreadLocal.withInitial(() -> new Board(size));
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Generates and solves boards; the same seed always gives
+     * the same boards, no matter how the work gets split up
+     * @param count How many boards to solve
+     * @param seed The seed for the whole batch
+     * @return Press counts and failures for the batch
+     */
+    public Result solve(int count, long seed) {
+        int[] presses = new int[count];
+        long start = System.nanoTime();
+        int failed = pool.invoke(new Chunk(0, count, new SplittableRandom(seed), presses));
+        return new Result(presses, failed, System.nanoTime() - start);
+    }
+
+    /**
+     * Shuts the workers down once the farm isn't needed
+     */
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * The Chunk class solves a range of boards, splitting it
+     * (and its random stream) in half until it's small
+     */
+    private class Chunk extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L; //(Tasks are serializable, though never serialized)
+        private final SplittableRandom random;
+        private final int[] presses;
+        private final int from, to;
+
+        /**
+         * Sets up a range of boards
+         * @param from The first board
+         * @param to One past the last board
+         * @param random The random stream for this range
+         * @param presses Where press counts go, by board
+         */
+        Chunk(int from, int to, SplittableRandom random, int[] presses) {
+            this.from = from;
+            this.to = to;
+            this.random = random;
+            this.presses = presses;
+        }
+
+        /**
+         * Splits big ranges, and solves small ones
+         * @return How many boards failed to solve
+         */
+        @Override
+        protected Integer compute() {
+            if(to - from > LEAF) { //Split the stream before either half uses it
+                int mid = (from + to) >>> 1;
+                Chunk right = new Chunk(mid, to, random.split(), presses);
+                Chunk left = new Chunk(from, mid, random, presses);
+                right.fork();
+                return left.compute() + right.join();
+            } //End split
+            Board board = boards.get();
+            int failed = 0;
+            for(int i = from; i < to; i++) {
+                board.generate(random);
+                Solver solver = new Solver(board, null, optimal);
+                solver.solve();
+                presses[i] = solver.getPresses();
+                if(!solver.isDone())
+                    failed++;
+            } //End board loop
+            return failed;
+        }
+    }
+
+    /**
+     * The Result class holds what a batch did
+     */
+    public static class Result {
+        private final int[] presses;
+        private final int failed;
+        private final long nanos;
+
+        /**
+         * Stores a batch's results
+         * @param presses Press counts, by board
+         * @param failed How many boards failed to solve
+         * @param nanos How long the batch took
+         */
+        Result(int[] presses, int failed, long nanos) {
+            this.presses = presses;
+            this.failed = failed;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Get method to access press counts
+         * @return Press counts, by board
+         */
+        public int[] getPresses() {
+            return presses;
+        }
+
+        /**
+         * Get method to access the failure count
+         * @return How many boards failed to solve
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * Get method to access the run time
+         * @return How long the batch took (ns)
+         */
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package app;
+
+/**
+ * The SolverListener interface lets something (like the GUI)
+ * show which step a solver is on.
+ */
+public interface SolverListener {
+    /**
+     * Called when the solver starts a new step
+     * @param step A short description of the step
+     */
+    void stepChanged(String step);
+}
@@ -0,0 +1,301 @@
+package app;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidParameterException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The SpaceSearch class fills a DistanceTable file for boards too
+ * big to search in heap arrays (5*5 has 25 * 2^24 states). It runs
+ * the same retrograde search as TableGenerator, level by level,
+ * with each level split across cores by fork-join. Search marks are
+ * 2 bits per state in a memory-mapped work file, and the table is
+ * written straight into a mapped file, so the heap stays tiny.
+ * After every phase the files are flushed and a checkpoint is
+ * written, so a stopped run resumes from the last finished phase.
+ */
+public class SpaceSearch {
+    private static final VarHandle WORDS = //Atomic access to mapped longs
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final long LOW = 0x5555555555555555L; //Low bit of every 2-bit mark
+    //Marks: 0=unseen, 1=done, 2 or 3=frontier (they take turns by level)
+    private static final int CHUNK = 1 << 12; //Words per fork-join leaf (32 states each)
+    private final ForkJoinPool pool;
+    private final long[] masks; //Press masks by index
+    private final int cells;
+    private final int size;
+    private final int words; //Longs of marks
+    private MappedByteBuffer marks; //2 bits per state
+    private MappedByteBuffer table; //Header, then 4 bits per state
+
+    /**
+     * Sets up masks and a pool for one size
+     * @param size The size of the board
+     * @param threads How many cores to use
+     */
+    public SpaceSearch(int size, int threads) {
+        if(size < 3 || size > DistanceTable.MAX_SIZE) //Validation (marks must fill whole words)
+            throw new InvalidParameterException("Invalid table size received");
+        this.size = size;
+        cells = size * size;
+        words = (int) (DistanceTable.states(size) >>> 5);
+        State blank = new State(size);
+        masks = new long[cells];
+        for(int i = 0; i < cells; i++)
+            masks[i] = blank.getMask(i);
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Runs (or resumes) the search and moves the finished table
+     * to where DistanceTable looks for it
+     * @throws IOException If a file can't be used
+     */
+    public void run() throws IOException {
+        Path file = DistanceTable.file(size);
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        Path work = file.resolveSibling(file.getFileName() + ".work");
+        Path checkpoint = file.resolveSibling(file.getFileName() + ".level");
+        if(file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        boolean resume = Files.isRegularFile(checkpoint);
+        marks = map(work, (long) words * 8);
+        table = map(part, DistanceTable.HEADER + DistanceTable.states(size) / 2);
+
+        int level = 0;
+        boolean expanding = true; //Each level expands, then sweeps
+        if(resume) { //Pick up from the last finished phase
+            String[] saved = Files.readString(checkpoint).trim().split(" ");
+            level = Integer.parseInt(saved[0]);
+            expanding = saved[1].equals("expand");
+            System.out.printf("Resuming %dx%d at level %d (%s)%n", size, size, level, saved[1]);
+        } else { //Start fresh: nothing seen, nothing known, goals on the frontier
+            for(int w = 0; w < words; w++)
+                marks.putLong(w << 3, 0);
+            for(int i = DistanceTable.HEADER; i < table.capacity(); i += 8)
+                table.putLong(i, -1L);
+            table.putInt(0, DistanceTable.MAGIC).putInt(4, size);
+            long all = (1L << cells) - 1;
+            for(int black = 0; black < cells; black++) { //Solved: all blue or all yellow
+                seed(DistanceTable.index(0, black, cells));
+                seed(DistanceTable.index(all & ~(1L << black), black, cells));
+            } //End goal loop
+            save(checkpoint, 0, true);
+        } //End setup
+
+        long start = System.nanoTime();
+        long total = 0;
+        while(true) { //Expand the frontier, then retire it and record the new one
+            if(level + 1 >= DistanceTable.UNKNOWN)
+                throw new IllegalStateException("Distances don't fit in 4 bits");
+            long levelStart = System.nanoTime();
+            long expanded = 0;
+            if(expanding) {
+                expanded = pool.invoke(new Phase(0, words, level, true));
+                save(checkpoint, level, false);
+            } //End expansion
+            long found = pool.invoke(new Phase(0, words, level, false));
+            total += expanded;
+            double seconds = (System.nanoTime() - levelStart) / 1e9;
+            System.out.printf("Level %2d: %,d expanded, %,d found (%,.0f states/sec)%n",
+                    level, expanded, found, expanded / seconds);
+            level++;
+            expanding = true;
+            save(checkpoint, level, true);
+            if(found == 0)
+                break; //No new states, so everything reachable is done
+        } //End level loop
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%dx%d: %,d states in %.1f s (%,.0f states/sec on %d threads)%n",
+                size, size, total, seconds, total / seconds, pool.getParallelism());
+        Path copy = file.resolveSibling(file.getFileName() + ".tmp");
+        marks.force();
+        table.force();
+        try(FileChannel channel = FileChannel.open(copy, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer all = table.duplicate().clear();
+            while(all.hasRemaining())
+                channel.write(all);
+            channel.force(false);
+        } //Closed before moving (a mapped file can't be moved on some systems, like Windows)
+        marks = null; //Let go of the mappings
+        table = null;
+        Files.move(copy, file, StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(checkpoint); //Finished, so never resume
+        discard(part);
+        discard(work);
+    }
+
+    /**
+     * Helper method used to delete a finished work file (it may
+     * still be mapped until it's collected, which some systems,
+     * like Windows, won't delete, so that's only reported)
+     * @param path The file
+     */
+    private static void discard(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch(IOException e) { System.out.println("Couldn't delete " + path + " (still mapped), so delete it by hand"); }
+    }
+
+    /**
+     * Helper method used to map a file, making it if needed
+     * @param path The file
+     * @param length The length of the file
+     * @return The mapping
+     * @throws IOException If the file can't be mapped
+     */
+    private static MappedByteBuffer map(Path path, long length) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        } //Mappings stay valid once the channel is closed
+    }
+
+    /**
+     * Helper method used to flush both files and note the phase
+     * @param checkpoint The checkpoint file
+     * @param level The level to pick up from
+     * @param expand Whether that level still needs expanding
+     * @throws IOException If the checkpoint can't be written
+     */
+    private void save(Path checkpoint, int level, boolean expand) throws IOException {
+        marks.force();
+        table.force();
+        Files.writeString(checkpoint, level + (expand ? " expand" : " sweep"));
+    }
+
+    /**
+     * Helper method used to put a solved state on the first frontier
+     * @param index The state's index
+     */
+    private void seed(long index) {
+        mark((int) index, 2);
+        nibble((int) index, 0);
+    }
+
+    /**
+     * Helper method used to write one distance (only one thread
+     * ever writes a byte, since phases split on whole words)
+     * @param index The state's index
+     * @param level The distance
+     */
+    private void nibble(int index, int level) {
+        int at = DistanceTable.HEADER + (index >>> 1);
+        int shift = (index & 1) * 4;
+        table.put(at, (byte) (table.get(at) & ~(0xF << shift) | level << shift));
+    }
+
+    /**
+     * Helper method used to claim an unseen state, atomically
+     * @param index The state's index
+     * @param code The mark to give it
+     * @return Whether this call claimed it
+     */
+    private boolean mark(int index, int code) {
+        int at = (index >>> 5) << 3;
+        int shift = (index & 31) << 1;
+        while(true) { //Retry if another thread changed the word first
+            long word = (long) WORDS.getVolatile(marks, at);
+            if((word >>> shift & 3) != 0)
+                return false; //Already seen
+            if(WORDS.compareAndSet(marks, at, word, word | (long) code << shift))
+                return true;
+        } //End retry loop
+    }
+
+    /**
+     * The Phase class is one fork-join pass over a range of words.
+     * Expanding claims every unseen predecessor of the frontier
+     * with the next level's mark. Sweeping retires the frontier and
+     * writes the next level's distances; running it twice is harmless.
+     */
+    private class Phase extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L; //(Tasks are serializable, though never serialized)
+        private final int from, to; //Word range
+        private final int level;
+        private final boolean expand;
+
+        /**
+         * Sets up a pass over some words
+         * @param from The first word
+         * @param to One past the last word
+         * @param level The level being expanded
+         * @param expand Whether to expand (or sweep)
+         */
+        Phase(int from, int to, int level, boolean expand) {
+            this.from = from;
+            this.to = to;
+            this.level = level;
+            this.expand = expand;
+        }
+
+        /**
+         * Splits big ranges in half, and runs small ones
+         * @return States expanded (or found, when sweeping)
+         */
+        @Override
+        protected Long compute() {
+            if(to - from > CHUNK) { //Split until the range is small
+                int mid = (from + to) >>> 1;
+                Phase left = new Phase(from, mid, level, expand);
+                left.fork();
+                long right = new Phase(mid, to, level, expand).compute();
+                return right + left.join();
+            } //End split
+            int current = 2 + (level & 1), next = 2 + (~level & 1);
+            long count = 0;
+            for(int w = from; w < to; w++) {
+                long word = (long) WORDS.getVolatile(marks, w << 3);
+                long high = word >>> 1 & LOW, low = word & LOW;
+                long hits = high & (current == 3 ? low : ~low); //Frontier marks
+                if(expand) { //Claim each frontier state's predecessors
+                    for(; hits != 0; hits &= hits - 1) {
+                        int index = (w << 5) + (Long.numberOfTrailingZeros(hits) >>> 1);
+                        int black = index >>> (cells - 1);
+                        long bits = TableGenerator.bits(index, cells);
+                        for(int move = 0; move < cells; move++) {
+                            if(move != black)
+                                mark((int) TableGenerator.undo(masks, cells, bits, black, move), next);
+                        } //End move-counting loop
+                        count++;
+                    } //End frontier loop
+                } else { //Retire the frontier, and record the new one
+                    long fresh = high & (next == 3 ? low : ~low);
+                    long retired = word & ~(hits | hits << 1) | hits; //Frontier lanes become 01
+                    if(hits != 0)
+                        WORDS.setVolatile(marks, w << 3, retired);
+                    for(; fresh != 0; fresh &= fresh - 1) {
+                        nibble((w << 5) + (Long.numberOfTrailingZeros(fresh) >>> 1), level + 1);
+                        count++;
+                    } //End new state loop
+                } //End phase choice
+            } //End word loop
+            return count;
+        }
+    }
+
+    /**
+     * The main method, which fills the table for a size
+     * @param args Size (default 5), then threads (default all cores)
+     * @throws IOException If a file can't be used
+     */
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int threads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        new SpaceSearch(size, threads).run();
+    }
+}
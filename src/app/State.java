@@ -0,0 +1,612 @@
+package app;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidParameterException;
+import java.util.stream.LongStream;
+
+/**
+ * The State class is the packed engine behind a board.
+ * Each light is one color bit (1=yellow, 0=blue), all kept
+ * in a single long up to 8*8 and in rows of longs above that.
+ * The black tile is tracked by index, and its bit is always 0,
+ * so a running count of yellow lights makes solving checks O(1).
+ * A 64-bit Zobrist hash (a key per yellow light, plus one for
+ * black's spot) is kept up to date by every press, so positions
+ * can be told apart cheaply. Keys are mixed from the light's
+ * index, so there's no key table to store.
+ */
+public class State {
+    public static final int PACKED_MAX = 8; //Biggest size that fits in a long
+    public static final int INDEX_MAX = 7; //Biggest size whose index (black too) fits in a long
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L; //SplitMix64's seed step
+    private final long[] masks; //Press masks by index (packed only)
+    private final long[] rows; //Row-major words (unpacked only)
+    private final int words; //Words per row (unpacked only)
+    private final int size; //2+
+    private long bits; //All lights (packed only)
+    private int black; //Index of the black tile (row * size + col)
+    private int yellow; //Count of yellow lights (unpacked only)
+    private long hash; //Zobrist hash (only up to date if hashed)
+    private boolean hashed; //Is the hash up to date? (Bulk changes redo it on request)
+
+    /**
+     * Creates an all-blue state with black in the top-left
+     * @param size The size of the board
+     */
+    public State(int size) {
+        if(size < 2) //If size is too small, error out
+            throw new InvalidParameterException("Board size below 2 received");
+        this.size = size;
+        if(size <= PACKED_MAX) { //Small enough to pack, so precompute masks
+            words = 0;
+            rows = null;
+            masks = new long[size * size];
+            for(int row = 0; row < size; row++) {
+                for(int col = 0; col < size; col++) {
+                    long mask = 1L << (row * size + col);
+                    if(row > 0) mask |= 1L << ((row - 1) * size + col);
+                    if(row < size - 1) mask |= 1L << ((row + 1) * size + col);
+                    if(col > 0) mask |= 1L << (row * size + col - 1);
+                    if(col < size - 1) mask |= 1L << (row * size + col + 1);
+                    masks[row * size + col] = mask;
+                } //End column-counting loop
+            } //End row-counting loop
+        } else { //Otherwise, use rows of words
+            words = (size + 63) >>> 6;
+            rows = new long[size * words];
+            masks = null;
+        } //End representation choice
+    }
+
+    /**
+     * Copies another state into a new one
+     * @param other The state to copy
+     */
+    public State(State other) {
+        this(other.size);
+        copyFrom(other);
+    }
+
+    /**
+     * Overwrites this state with another of the same size
+     * @param other The state to copy
+     */
+    public void copyFrom(State other) {
+        if(other.size != size) //Only same-size copies make sense
+            throw new InvalidParameterException("State size mismatch received");
+        bits = other.bits;
+        black = other.black;
+        yellow = other.yellow;
+        hash = other.hash;
+        hashed = other.hashed;
+        if(rows != null)
+            System.arraycopy(other.rows, 0, rows, 0, rows.length);
+    }
+
+    /**
+     * Makes a stream of random packed boards, for benchmarks and
+     * fuzzing. Board i is what fill() gives for the i-th nextLong()
+     * of new SplittableRandom(seed), so streams match seeded boards,
+     * and they can be split or run in parallel with no garbage.
+     * @param size The size of the boards (up to INDEX_MAX)
+     * @param seed The seed for the whole stream
+     * @param count How many boards to make
+     * @return Each board's index (see DistanceTable.index and load)
+     */
+    public static LongStream boards(int size, long seed, long count) {
+        if(size < 2 || size > INDEX_MAX) //Validation (black has to fit too)
+            throw new InvalidParameterException("Invalid stream size received");
+        int cells = size * size;
+        return LongStream.range(0, count).map(i -> pack(mix(seed + (i + 1) * GOLDEN), cells));
+    }
+
+    /**
+     * Helper method used to draw one packed board, exactly like fill()
+     * @param seed The board's seed
+     * @param cells The number of lights on the board
+     * @return The board's index
+     */
+    private static long pack(long seed, int cells) {
+        int black = (int) ((mix(seed + GOLDEN) >>> 32) * cells >>> 32);
+        long lights = mix(seed + 2 * GOLDEN) & ((1L << cells) - 1) & ~(1L << black);
+        int lit = Long.bitCount(lights);
+        if(lit == 0 || lit == cells - 1) //Never solved (see fill)
+            lights ^= 1L << (black + 1) % cells | 1L << (black + 2) % cells;
+        return DistanceTable.index(lights, black, cells);
+    }
+
+    /**
+     * Helper method used to scramble a seed (SplitMix64's mixer,
+     * the same one SplittableRandom uses)
+     * @param z The value to scramble
+     * @return The scrambled value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Refills every light in place from a seed, with no garbage:
+     * SplitMix64 picks black's spot, then fills whole words of lights.
+     * Solved draws get the two lights after black flipped, so the
+     * result is never solved.
+     * @param seed The seed (the same seed always gives the same state)
+     */
+    public void fill(long seed) {
+        int cells = size * size;
+        long z = seed;
+        hashed = false; //Every light changes, so hash again on request
+        black = (int) ((mix(z += GOLDEN) >>> 32) * cells >>> 32); //Top bits, scaled to the board
+        if(rows == null) //Packed: one word for every light
+            bits = mix(z + GOLDEN) & (cells == 64 ? -1L : (1L << cells) - 1) & ~(1L << black);
+        else { //Unpacked: one word at a time, cutting each row's last word to fit
+            long last = (size & 63) == 0 ? -1L : (1L << (size & 63)) - 1;
+            yellow = 0;
+            for(int word = 0; word < rows.length; word++) {
+                rows[word] = mix(z += GOLDEN) & (word % words == words - 1 ? last : -1L);
+                yellow += Long.bitCount(rows[word]);
+            } //End word loop
+            setBit(black / size, black % size, false); //Black has no color
+        } //End representation choice
+        if(isSolved()) { //Flip two lights (never black) so it won't be solved
+            flip((black + 1) % cells / size, (black + 1) % cells % size);
+            flip((black + 2) % cells / size, (black + 2) % cells % size);
+        } //End solved check
+    }
+
+    /**
+     * Loads a packed board from its index (like the ones boards() gives)
+     * @param index The board's index (see DistanceTable.index)
+     */
+    public void load(long index) {
+        if(size > INDEX_MAX) //Only small boards have indexes
+            throw new InvalidParameterException("Board too big to load an index");
+        int cells = size * size;
+        black = (int) (index >>> (cells - 1));
+        bits = TableGenerator.bits(index, cells);
+        hashed = false;
+    }
+
+    /**
+     * Get method to access how many bytes write() takes
+     * @return Black's index, then every word of lights
+     */
+    public int getByteSize() {
+        return Integer.BYTES + Long.BYTES * (rows == null ? 1 : rows.length);
+    }
+
+    /**
+     * Writes this state at a buffer's position (see getByteSize)
+     * @param buffer The buffer to write to
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.putInt(black);
+        if(rows == null)
+            buffer.putLong(bits);
+        else {
+            for(long word : rows)
+                buffer.putLong(word);
+        } //End representation choice
+    }
+
+    /**
+     * Reads a state written by write() from a buffer's position
+     * @param buffer The buffer to read from
+     */
+    public void read(ByteBuffer buffer) {
+        int spot = buffer.getInt();
+        if(spot < 0 || spot >= size * size) //Validation (black should be on the board)
+            throw new InvalidParameterException("Invalid saved state received");
+        black = spot;
+        hashed = false;
+        if(rows == null) {
+            bits = buffer.getLong();
+            if((bits & ~(size == 8 ? -1L : (1L << size * size) - 1)) != 0)
+                throw new InvalidParameterException("Invalid saved state received");
+        } else {
+            long last = (size & 63) == 0 ? -1L : (1L << (size & 63)) - 1;
+            yellow = 0;
+            for(int word = 0; word < rows.length; word++) {
+                rows[word] = buffer.getLong();
+                if(word % words == words - 1 && (rows[word] & ~last) != 0)
+                    throw new InvalidParameterException("Invalid saved state received");
+                yellow += Long.bitCount(rows[word]);
+            } //End word loop
+        } //End representation choice
+        if(bit(black / size, black % size)) //Black has no color
+            throw new InvalidParameterException("Invalid saved state received");
+    }
+
+    /**
+     * Get method to access size
+     * @return The board's size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get method to access the black tile
+     * @return The black tile's index (row * size + col)
+     */
+    public int getBlack() {
+        return black;
+    }
+
+    /**
+     * Get method to access the black tile's row
+     * @return The black tile's row
+     */
+    public int getBlackRow() {
+        return black / size;
+    }
+
+    /**
+     * Get method to access the black tile's column
+     * @return The black tile's column
+     */
+    public int getBlackCol() {
+        return black % size;
+    }
+
+    /**
+     * Get method to access the packed lights (size 8 and under)
+     * @return All color bits, indexed by row * size + col
+     */
+    public long getBits() {
+        return bits;
+    }
+
+    /**
+     * Get method to access a precomputed press mask (size 8 and under)
+     * @param index The index of the pressed tile
+     * @return The bits of the tile and its neighbors
+     */
+    public long getMask(int index) {
+        return masks[index];
+    }
+
+    /**
+     * Get method to access the count of yellow lights
+     * @return How many lights are yellow
+     */
+    public int getYellow() {
+        return rows == null ? Long.bitCount(bits) : yellow;
+    }
+
+    /**
+     * Get method to access the count of blue lights
+     * @return How many lights (except black) are blue
+     */
+    public int getBlue() {
+        return size * size - 1 - getYellow();
+    }
+
+    /**
+     * Checks whether this state is packed into a single long
+     * @return Whether the size is 8 or under
+     */
+    public boolean isPacked() {
+        return rows == null;
+    }
+
+    /**
+     * Gets the state of one light, like Tile.getState
+     * @param row The row of the light
+     * @param col The column of the light
+     * @return 1=yellow, -1=blue, 0=black
+     */
+    public int get(int row, int col) {
+        if(row * size + col == black)
+            return 0; //Black has no color
+        return bit(row, col) ? 1 : -1;
+    }
+
+    /**
+     * Sets the state of one light. Setting black moves the
+     * black tile here, leaving its old spot blue.
+     * @param row The row of the light
+     * @param col The column of the light
+     * @param state 1=yellow, -1=blue, 0=black
+     */
+    public void set(int row, int col, int state) {
+        if(state < -1 || state > 1) //Validation (should be -1 to 1)
+            throw new InvalidParameterException("Invalid tile state received");
+        int index = row * size + col;
+        if(state == 0) { //Moving black clears its new spot's color
+            setBit(row, col, false);
+            moveBlack(index);
+        } else if(index == black) //Black can only move, not be colored
+            throw new InvalidParameterException("Cannot color the black tile");
+        else setBit(row, col, state == 1);
+    }
+
+    /**
+     * Flips one light
+     * @param row The row of the light
+     * @param col The column of the light
+     * @return Whether the light was black (and so unchanged)
+     */
+    public boolean flip(int row, int col) {
+        if(row * size + col == black)
+            return true;
+        setBit(row, col, !bit(row, col));
+        return false;
+    }
+
+    /**
+     * Presses a light, which flips it and its neighbors,
+     * "moving" the black tile here if it's adjacent
+     * @param row The row of the light to press
+     * @param col The column of the light to press
+     */
+    public void press(int row, int col) {
+        int index = row * size + col;
+        if(index == black) //Pressing black does nothing
+            return;
+        if(rows == null) { //Packed: one XOR plus the black swap rule
+            long blackBit = 1L << black;
+            long mask = masks[index];
+            long before = bits;
+            bits ^= mask & ~blackBit;
+            if((mask & blackBit) != 0) { //If black is adjacent, swap
+                bits = (bits >>> index & 1L) != 0
+                        ? (bits | blackBit) & ~(1L << index) : bits;
+                moveBlack(index);
+            } //End swap
+            rehash(before ^ bits);
+            return;
+        } //Unpacked: flip the plus shape word by word, then swap
+        boolean adjacent = isAdjacent(index);
+        flipRow(row, col);
+        if(row > 0) flipBit(row - 1, col);
+        if(row < size - 1) flipBit(row + 1, col);
+        if(adjacent) { //The black bit was flipped along the way, so fix it
+            int blackRow = black / size, blackCol = black % size;
+            setBit(blackRow, blackCol, bit(row, col));
+            setBit(row, col, false);
+            moveBlack(index);
+        } //End swap
+    }
+
+    /**
+     * Get method to access how many words hold one row
+     * @return Words per row (1 when packed)
+     */
+    public int getRowWords() {
+        return rows == null ? 1 : words;
+    }
+
+    /**
+     * Gets one word of a row's lights (bit i is column word * 64 + i)
+     * @param row The row to read
+     * @param word Which word of the row
+     * @return The word's color bits (black's bit is 0)
+     */
+    public long getWord(int row, int word) {
+        if(rows == null)
+            return bits >>> (row * size) & (1L << size) - 1;
+        return rows[row * words + word];
+    }
+
+    /**
+     * Presses every tile in one word of a row at once (bit i presses
+     * column word * 64 + i). Black can't be in or next to the row, so
+     * there are no swaps and the presses all cancel out like XORs.
+     * @param row The row to press
+     * @param word Which word of the row
+     * @param mask The columns to press
+     */
+    public void pressWord(int row, int word, long mask) {
+        int blackRow = black / size; //Validation (no swaps allowed)
+        if(blackRow >= row - 1 && blackRow <= row + 1)
+            throw new InvalidParameterException("Black is too close to the pressed row");
+        long valid = word == getRowWords() - 1 && (size & 63) != 0 ? (1L << (size & 63)) - 1 : -1L;
+        if(word < 0 || word >= getRowWords() || (mask & ~valid) != 0)
+            throw new InvalidParameterException("Invalid word press received");
+        long side = (mask ^ mask << 1 ^ mask >>> 1) & valid; //Each press and its row neighbors
+        if(rows == null) { //Packed: shift everything into place
+            long before = bits;
+            bits ^= side << (row * size);
+            if(row > 0) bits ^= mask << ((row - 1) * size);
+            if(row < size - 1) bits ^= mask << ((row + 1) * size);
+            rehash(before ^ bits);
+            return;
+        } //Unpacked: neighbors can spill into the words on either side
+        xorWord(row, word, side);
+        if(word > 0) xorWord(row, word - 1, mask << 63);
+        if(word < words - 1) xorWord(row, word + 1, mask >>> 63);
+        if(row > 0) xorWord(row - 1, word, mask);
+        if(row < size - 1) xorWord(row + 1, word, mask);
+    }
+
+    /**
+     * Exactly undoes a press, in O(1). Plain presses undo themselves;
+     * a swap is undone by moving black back and un-flipping the rest.
+     * @param row The row of the light that was pressed
+     * @param col The column of the light that was pressed
+     * @param from Where black was before the press
+     */
+    public void unpress(int row, int col, int from) {
+        int index = row * size + col;
+        if(from == index) //Pressing black did nothing
+            return;
+        if(black == from) { //Black didn't move, so the press undoes itself
+            press(row, col);
+            return;
+        } //Otherwise it was a swap, so black must be on the pressed light
+        if(black != index || !isAdjacent(from))
+            throw new InvalidParameterException("Press can't be undone from here");
+        int fromRow = from / size, fromCol = from % size;
+        boolean lit = bit(fromRow, fromCol); //The pressed light's color, flipped
+        setBit(fromRow, fromCol, false);
+        moveBlack(from);
+        setBit(row, col, !lit);
+        if(row > 0 && index - size != from) flip(row - 1, col); //Un-flip the rest of the plus
+        if(row < size - 1 && index + size != from) flip(row + 1, col);
+        if(col > 0 && index - 1 != from) flip(row, col - 1);
+        if(col < size - 1 && index + 1 != from) flip(row, col + 1);
+    }
+
+    /**
+     * Gets the Zobrist hash of this position (O(1) after the
+     * first call, since presses keep it up to date)
+     * @return A 64-bit hash of black's spot and every light
+     */
+    public long getHash() {
+        if(!hashed) { //Hash from scratch after bulk changes
+            hash = blackKey(black);
+            if(rows == null)
+                rehashAll(bits, 0);
+            else {
+                for(int row = 0; row < size; row++) {
+                    for(int word = 0; word < words; word++)
+                        rehashAll(rows[row * words + word], row * size + word * 64);
+                } //End row loop
+            } //End representation choice
+            hashed = true;
+        } //End hash check
+        return hash;
+    }
+
+    /**
+     * Checks for being solved, meaning all lights
+     * (except the black tile) are the same color
+     * @return Whether the state is solved
+     */
+    public boolean isSolved() {
+        int lit = getYellow(); //All blue or all yellow
+        return lit == 0 || lit == size * size - 1;
+    }
+
+    /**
+     * Helper method used to move black, keeping the hash up to date
+     * @param to Black's new index
+     */
+    private void moveBlack(int to) {
+        if(hashed)
+            hash ^= blackKey(black) ^ blackKey(to);
+        black = to;
+    }
+
+    /**
+     * Helper method used to update the hash after packed lights flip
+     * @param flipped The lights that flipped
+     */
+    private void rehash(long flipped) {
+        if(hashed)
+            rehashAll(flipped, 0);
+    }
+
+    /**
+     * Helper method used to add the keys of a word of lights to the hash
+     * @param lights The lights (bit i is light first + i)
+     * @param first The index of the word's first light
+     */
+    private void rehashAll(long lights, int first) {
+        for(; lights != 0; lights &= lights - 1)
+            hash ^= key(first + Long.numberOfTrailingZeros(lights));
+    }
+
+    /**
+     * Helper method used to get a yellow light's hash key
+     * @param index The light's index
+     * @return Its key (odd SplitMix64 outputs)
+     */
+    private static long key(int index) {
+        return mix((2L * index + 1) * GOLDEN);
+    }
+
+    /**
+     * Helper method used to get black's hash key
+     * @param index Black's index
+     * @return Its key (even SplitMix64 outputs)
+     */
+    private static long blackKey(int index) {
+        return mix((2L * index + 2) * GOLDEN);
+    }
+
+    /**
+     * Helper method used to check a tile against black
+     * @param index The index of the tile
+     * @return Whether the tile shares an edge with black
+     */
+    private boolean isAdjacent(int index) {
+        int dRow = Math.abs(index / size - black / size);
+        int dCol = Math.abs(index % size - black % size);
+        return dRow + dCol == 1;
+    }
+
+    /**
+     * Helper method used to read one color bit
+     * @param row The row of the light
+     * @param col The column of the light
+     * @return Whether the light is yellow
+     */
+    private boolean bit(int row, int col) {
+        if(rows == null)
+            return (bits >>> (row * size + col) & 1L) != 0;
+        return (rows[row * words + (col >>> 6)] >>> (col & 63) & 1L) != 0;
+    }
+
+    /**
+     * Helper method used to write one color bit
+     * @param row The row of the light
+     * @param col The column of the light
+     * @param lit Whether the light is yellow
+     */
+    private void setBit(int row, int col, boolean lit) {
+        if(rows == null) {
+            long mask = 1L << (row * size + col);
+            long before = bits;
+            bits = lit ? bits | mask : bits & ~mask;
+            rehash(before ^ bits);
+        } else {
+            long mask = 1L << (col & 63);
+            int word = row * words + (col >>> 6);
+            if(((rows[word] & mask) != 0) != lit) //Count only real changes
+                flipBit(row, col);
+        } //End representation choice
+    }
+
+    /**
+     * Helper method used to flip one color bit (unpacked only)
+     * @param row The row of the light
+     * @param col The column of the light
+     */
+    private void flipBit(int row, int col) {
+        int word = row * words + (col >>> 6);
+        long mask = 1L << (col & 63);
+        yellow += (rows[word] & mask) != 0 ? -1 : 1;
+        rows[word] ^= mask;
+        if(hashed)
+            hash ^= key(row * size + col);
+    }
+
+    /**
+     * Helper method used to flip many bits of one word (unpacked only)
+     * @param row The row of the word
+     * @param word Which word of the row
+     * @param mask The bits to flip
+     */
+    private void xorWord(int row, int word, long mask) {
+        int at = row * words + word;
+        yellow += Long.bitCount(mask & ~rows[at]) - Long.bitCount(mask & rows[at]);
+        rows[at] ^= mask;
+        for(long left = hashed ? mask : 0; left != 0; left &= left - 1)
+            hash ^= key(row * size + word * 64 + Long.numberOfTrailingZeros(left));
+    }
+
+    /**
+     * Helper method used to flip a light and its row neighbors (unpacked only)
+     * @param row The row of the light
+     * @param col The column of the light
+     */
+    private void flipRow(int row, int col) {
+        flipBit(row, col);
+        if(col > 0) flipBit(row, col - 1);
+        if(col < size - 1) flipBit(row, col + 1);
+    }
+}
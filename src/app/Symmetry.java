@@ -0,0 +1,137 @@
+package app;
+
+import java.security.InvalidParameterException;
+
+/**
+ * The Symmetry class maps packed states to a canonical form.
+ * Turning or mirroring the board (8 ways) and swapping yellow
+ * with blue never changes how far a state is from solved, so
+ * caches can store one entry for all 16 versions of a state.
+ * A transform is named by a code: turn * 2 + (1 if colors swap).
+ */
+public class Symmetry {
+    public static final int COUNT = 16; //8 turns, each with or without a color swap
+    private static final Symmetry[] symmetries = new Symmetry[State.PACKED_MAX + 1];
+    private final int[][] forward; //Where each light goes, by turn
+    private final int[][] backward; //Where each light came from, by turn
+    private final long all; //Every light on the board
+    private final int cells;
+
+    /**
+     * Gets the shared symmetry tables for a size
+     * @param size The size of the board (packed sizes only)
+     * @return The tables, made on first use
+     */
+    public static synchronized Symmetry forSize(int size) {
+        if(size < 2 || size > State.PACKED_MAX) //Only packed states are handled
+            throw new InvalidParameterException("Invalid symmetry size received");
+        if(symmetries[size] == null)
+            symmetries[size] = new Symmetry(size);
+        return symmetries[size];
+    }
+
+    /**
+     * Builds the light maps for all 8 turns
+     * @param size The size of the board
+     */
+    private Symmetry(int size) {
+        cells = size * size;
+        all = size == 8 ? -1L : (1L << cells) - 1;
+        forward = new int[COUNT / 2][cells];
+        backward = new int[COUNT / 2][cells];
+        int last = size - 1;
+        for(int turn = 0; turn < COUNT / 2; turn++) {
+            for(int row = 0; row < size; row++) {
+                for(int col = 0; col < size; col++) { //Rotations first, then mirrors
+                    int r = row, c = col;
+                    if(turn >= 4) c = last - col; //Mirror left to right
+                    for(int i = 0; i < turn % 4; i++) { //Turn a quarter clockwise
+                        int t = r;
+                        r = c;
+                        c = last - t;
+                    } //End quarter-turn loop
+                    forward[turn][row * size + col] = r * size + c;
+                    backward[turn][r * size + c] = row * size + col;
+                } //End column-counting loop
+            } //End row-counting loop
+        } //End turn loop
+    }
+
+    /**
+     * Finds the transform that gives the canonical version of a state:
+     * the one with the lowest black index, then the lowest lights
+     * @param bits The packed lights
+     * @param black The black tile's index
+     * @return The transform's code
+     */
+    public int canonical(long bits, int black) {
+        int best = 0, bestBlack = Integer.MAX_VALUE;
+        long bestBits = 0;
+        for(int turn = 0; turn < COUNT / 2; turn++) {
+            int turned = forward[turn][black];
+            if(turned > bestBlack)
+                continue; //Black decides first, so this can't win
+            long lights = turn(turn, bits);
+            long swapped = ~lights & all & ~(1L << turned);
+            for(int swap = 0; swap < 2; swap++) {
+                long candidate = swap == 0 ? lights : swapped;
+                if(turned < bestBlack || Long.compareUnsigned(candidate, bestBits) < 0) {
+                    best = turn * 2 + swap;
+                    bestBlack = turned;
+                    bestBits = candidate;
+                } //End better-candidate check
+            } //End swap loop
+        } //End turn loop
+        return best;
+    }
+
+    /**
+     * Applies a transform to packed lights
+     * @param code The transform's code
+     * @param bits The packed lights
+     * @param black The black tile's index (before the transform)
+     * @return The transformed lights
+     */
+    public long bits(int code, long bits, int black) {
+        long lights = turn(code >>> 1, bits);
+        if((code & 1) == 0)
+            return lights;
+        return ~lights & all & ~(1L << forward[code >>> 1][black]);
+    }
+
+    /**
+     * Applies a transform to one light (or press)
+     * @param code The transform's code
+     * @param cell The light's index
+     * @return Where the light goes
+     */
+    public int cell(int code, int cell) {
+        return forward[code >>> 1][cell];
+    }
+
+    /**
+     * Undoes a transform on one light (or press)
+     * @param code The transform's code
+     * @param cell The transformed light's index
+     * @return Where the light came from
+     */
+    public int original(int code, int cell) {
+        return backward[code >>> 1][cell];
+    }
+
+    /**
+     * Helper method used to move every light by one turn
+     * @param turn Which turn to apply
+     * @param bits The packed lights
+     * @return The turned lights
+     */
+    private long turn(int turn, long bits) {
+        if(turn == 0)
+            return bits;
+        long lights = 0;
+        int[] map = forward[turn];
+        for(long left = bits; left != 0; left &= left - 1)
+            lights |= 1L << map[Long.numberOfTrailingZeros(left)];
+        return lights;
+    }
+}
@@ -0,0 +1,167 @@
+package app;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+
+/**
+ * The TableGenerator class builds DistanceTable files with a
+ * retrograde breadth-first search: it starts from every solved
+ * state and walks presses backwards, a level at a time.
+ * Run it once per machine (args: sizes, default 3 4).
+ * Sizes too big for the heap are handed to SpaceSearch.
+ */
+public class TableGenerator {
+    public static final int HEAP_MAX = 4; //Bigger sizes go to SpaceSearch
+    private final long[] masks; //Press masks by index
+    private final int cells;
+    private final int size;
+
+    /**
+     * Sets up masks for one size
+     * @param size The size of the board
+     */
+    public TableGenerator(int size) {
+        if(size < 2 || size > HEAP_MAX) //Validation (table must fit in the heap)
+            throw new InvalidParameterException("Invalid table size received");
+        this.size = size;
+        cells = size * size;
+        State blank = new State(size);
+        masks = new long[cells];
+        for(int i = 0; i < cells; i++)
+            masks[i] = blank.getMask(i);
+    }
+
+    /**
+     * Runs the search and packs distances two to a byte
+     * @return The nibbles, indexed like DistanceTable.index
+     */
+    public byte[] generate() {
+        int states = (int) DistanceTable.states(size);
+        byte[] nibbles = new byte[states / 2];
+        Arrays.fill(nibbles, (byte) 0xFF); //Every state starts unknown
+        int[] frontier = new int[states];
+        int[] next = new int[states];
+        int count = 0;
+        long all = size == 8 ? -1L : (1L << cells) - 1;
+        for(int black = 0; black < cells; black++) { //Solved: all blue or all yellow
+            frontier[count++] = mark(nibbles, DistanceTable.index(0, black, cells), 0);
+            frontier[count++] = mark(nibbles, DistanceTable.index(all & ~(1L << black), black, cells), 0);
+        } //End goal loop
+
+        for(int level = 0; count > 0; level++) { //Each level is the last one's predecessors
+            if(level + 1 >= DistanceTable.UNKNOWN)
+                throw new IllegalStateException("Distances don't fit in 4 bits");
+            int found = 0;
+            for(int f = 0; f < count; f++) {
+                int index = frontier[f];
+                int black = index >>> (cells - 1);
+                long bits = bits(index, cells);
+                for(int move = 0; move < cells; move++) {
+                    if(move == black)
+                        continue;
+                    int from = mark(nibbles, undo(masks, cells, bits, black, move), level + 1);
+                    if(from >= 0)
+                        next[found++] = from;
+                } //End move-counting loop
+            } //End frontier loop
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            count = found;
+        } //End level loop
+        return nibbles;
+    }
+
+    /**
+     * Gets a state's packed lights back from its index
+     * @param index The state's index
+     * @param cells The number of lights on the board
+     * @return The packed lights, with black's 0 bit put back
+     */
+    static long bits(long index, int cells) {
+        int black = (int) (index >>> (cells - 1));
+        long colors = index & ((1L << (cells - 1)) - 1);
+        return colors & ((1L << black) - 1) | colors >>> black << (black + 1);
+    }
+
+    /**
+     * Finds the state that a press came from. Plain presses undo
+     * themselves, and a black swap is undone by putting black back
+     * on the pressed tile's neighbor and un-flipping the rest.
+     * @param masks Press masks by index
+     * @param cells The number of lights on the board
+     * @param bits The packed lights after the press
+     * @param black The black tile's index after the press
+     * @param move The press (for a swap, the neighbor black came from)
+     * @return The earlier state's index
+     */
+    static long undo(long[] masks, int cells, long bits, int black, int move) {
+        long blackBit = 1L << black;
+        if((masks[move] & blackBit) == 0)
+            return DistanceTable.index(bits ^ masks[move], black, cells);
+        long moveBit = 1L << move; //The pressed tile took the old black tile's color, flipped
+        long before = bits ^ (masks[black] & ~blackBit & ~moveBit);
+        before = (bits & moveBit) != 0 ? before : before | blackBit;
+        return DistanceTable.index(before & ~moveBit, move, cells);
+    }
+
+    /**
+     * Helper method used to record a distance if it's new
+     * @param nibbles The table being built
+     * @param from The state's index
+     * @param level The distance to record
+     * @return The state's index if it was new, else -1
+     */
+    private int mark(byte[] nibbles, long from, int level) {
+        int index = (int) from;
+        int shift = (index & 1) * 4;
+        if((nibbles[index >>> 1] >>> shift & 0xF) != DistanceTable.UNKNOWN)
+            return -1; //Already found at this level or closer
+        nibbles[index >>> 1] = (byte) (nibbles[index >>> 1] & ~(0xF << shift) | level << shift);
+        return index;
+    }
+
+    /**
+     * Writes a finished table where DistanceTable looks for it
+     * @param nibbles The table from generate()
+     * @throws IOException If the file can't be written
+     */
+    public void write(byte[] nibbles) throws IOException {
+        Path file = DistanceTable.file(size);
+        if(file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        try(OutputStream out = Files.newOutputStream(file)) {
+            out.write(ByteBuffer.allocate(DistanceTable.HEADER)
+                    .putInt(DistanceTable.MAGIC).putInt(size).array());
+            out.write(nibbles);
+        } //End of writing
+    }
+
+    /**
+     * The main method, which generates tables for each size given
+     * @param args Sizes to generate (default 3 and 4, 5 also works)
+     * @throws IOException If a file can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length == 0)
+            args = new String[]{"3", "4"};
+        for(String arg : args) {
+            int size = Integer.parseInt(arg);
+            if(size > HEAP_MAX) { //Too big for heap arrays
+                new SpaceSearch(size, Runtime.getRuntime().availableProcessors()).run();
+                continue;
+            } //End of the off-heap case
+            long start = System.nanoTime();
+            TableGenerator generator = new TableGenerator(size);
+            generator.write(generator.generate());
+            System.out.printf("%dx%d: %d states in %d ms -> %s%n", size, size,
+                    DistanceTable.states(size), (System.nanoTime() - start) / 1000000,
+                    DistanceTable.file(size));
+        } //End size loop
+    }
+}
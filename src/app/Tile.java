@@ -1,39 +1,26 @@
 package app;
 
-import java.security.InvalidParameterException;
-
 /**
  * The Tile class represents a single tile of the puzzle.
- * Its state can be forcibly set during board generation or
- * tile "movement", which just swaps two adjacent tiles' states.
+ * It is a thin view over one light of its board's packed
+ * state: reads go straight to the engine, and presses go
+ * through the board (so they're recorded and can be undone).
  */
 public class Tile {
     private final Board board; //The board this tile belongs to
-    private int state; /** 1=yellow, -1=blue, 0=black */
-    private int row; //Location in board
-    private int col;
+    private final int row; //Location in board
+    private final int col;
 
     /**
-     * Creates a new tile for the board
+     * Creates a new view of a tile in the board
      * @param board Board with tile
      * @param row Row in board
      * @param col Column in board
      */
-    public Tile(Board board, int row, int col, int state) {
+    public Tile(Board board, int row, int col) {
         this.board = board;
         this.row = row;
         this.col = col;
-        setState(state);
-    }
-
-    /**
-     * Sets the tile's state manually
-     * @param state The state to set
-     */
-    public void setState(int state) {
-        if(state < -1 || state > 1) //Validation (should be -1 to 1)
-            throw new InvalidParameterException("Invalid tile state received");
-        this.state = state; //If validation fails, error out, else set this tile's state
     }
 
     /**
@@ -41,42 +28,14 @@ public class Tile {
      * @return The tile's state
      */
     public int getState() {
-        return state;
-    }
-
-    /**
-     * Flips the tile's state and checks if it's black
-     * @return Whether the square was black
-     */
-    public boolean flipCheck() {
-        return (state *= -1) == 0;
+        return board.getState().get(row, col);
     }
 
     /**
      * Presses the tile, which flips it and adjacent ones,
      * "moving" the black tile here if it's adjacent
      */
-    public void press() { //Flip this tile, and if it's not the black tile...
-        if (!flipCheck()) { //Toggle the adjacent tiles
-            toggle(row + 1, col);
-            toggle(row - 1, col);
-            toggle(row, col + 1);
-            toggle(row, col - 1);
-        }
+    public void press() {
+        board.press(row, col);
     }
-
-    /**
-     * Toggles a targeted tile and handles "movement" if needed
-     * @param row Row of the target tile
-     * @param col Column of the target tile
-     */
-    public void toggle(int row, int col) { //If the row and column are valid...
-        if(row > -1 && row < board.getSize() && col > -1 && col < board.getSize()) {
-            Tile target = board.getTiles()[row][col]; //Get the tile from the board
-            if (target.flipCheck()) { //Flip it, and if it's the black tile...
-                target.setState(state); //Move this tile's state over
-                setState(0); //And the black tile's state back
-            } //End tile movement mechanic
-        } //End validation
-    } //End method
 } //End class
@@ -0,0 +1,124 @@
+package app;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The TranspositionCache class remembers what's known about
+ * positions: the best known number of presses to solve each one,
+ * and the press that starts them. Small boards (the sizes that are
+ * solved optimally) are keyed by their canonical version, so all 16
+ * turns, mirrors and color swaps of a position share one entry, and
+ * presses are stored turned the same way. Bigger boards are keyed
+ * by their Zobrist hash. It holds a bounded number of positions per
+ * size, dropping the least recently used first, and can be shared
+ * between threads.
+ */
+public class TranspositionCache {
+    public static final int CAPACITY = 1 << 16; //Positions kept per size
+    private static final Map<Integer, TranspositionCache> caches = new HashMap<>();
+    private final Map<Long, Long> entries; //Distance << 32 | press, by key
+    private final Symmetry symmetry; //Folds symmetric positions together (small sizes only)
+
+    /**
+     * Gets the shared cache for a size, making it on first use
+     * @param size The size of the board
+     * @return The cache
+     */
+    public static synchronized TranspositionCache forSize(int size) {
+        return caches.computeIfAbsent(size, key -> new TranspositionCache(size));
+    }
+
+    /**
+     * Sets up an empty cache
+     * @param size The size of the board
+     */
+    private TranspositionCache(int size) {
+        symmetry = size <= OptimalSolver.MAX_SIZE ? Symmetry.forSize(size) : null;
+        entries = new LinkedHashMap<>(16, 0.75f, true) { //Least recently used goes first
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > CAPACITY;
+            }
+        };
+    }
+
+    /**
+     * Remembers a position, unless a shorter way is already known
+     * @param state The position
+     * @param distance Presses to solve it
+     * @param move The first of those presses (row * size + col)
+     */
+    public synchronized void put(State state, int distance, int move) {
+        int code = transform(state);
+        long key = key(state, code);
+        Long known = entries.get(key);
+        if(known == null || known >>> 32 > distance) //Stored turned like the key
+            entries.put(key, (long) distance << 32 | (symmetry == null ? move : symmetry.cell(code, move)));
+    }
+
+    /**
+     * Remembers every position along a solution (up to the
+     * cache's capacity, starting from the first)
+     * @param start The position the solution starts from (left unchanged)
+     * @param moves The solution's presses (row * size + col)
+     */
+    public void putAll(State start, int[] moves) {
+        State state = new State(start);
+        int size = state.getSize();
+        for(int i = 0; i < moves.length && i < CAPACITY; i++) {
+            put(state, moves.length - i, moves[i]);
+            state.press(moves[i] / size, moves[i] % size);
+        } //End solution loop
+    }
+
+    /**
+     * Looks up the best known first press for a position
+     * @param state The position
+     * @return The press (row * size + col), or -1 if it's unknown
+     */
+    public synchronized int getMove(State state) {
+        int code = transform(state);
+        Long known = entries.get(key(state, code));
+        if(known == null)
+            return -1;
+        int move = (int) (long) known; //Turned back to match the position
+        return symmetry == null ? move : symmetry.original(code, move);
+    }
+
+    /**
+     * Looks up the best known distance for a position
+     * @param state The position
+     * @return Presses to solve it, or -1 if it's unknown
+     */
+    public synchronized int getDistance(State state) {
+        Long known = entries.get(key(state, transform(state)));
+        return known == null ? -1 : (int) (known >>> 32);
+    }
+
+    /**
+     * Helper method used to find the transform to a position's
+     * canonical version
+     * @param state The position
+     * @return The transform's code (0, doing nothing, if not folded)
+     */
+    private int transform(State state) {
+        return symmetry == null ? 0 : symmetry.canonical(state.getBits(), state.getBlack());
+    }
+
+    /**
+     * Helper method used to find a position's key: its canonical
+     * black and lights (exact, since they fit in a long), or its
+     * hash if it's too big to fold
+     * @param state The position
+     * @param code The transform to its canonical version
+     * @return The key
+     */
+    private long key(State state, int code) {
+        if(symmetry == null)
+            return state.getHash();
+        long bits = symmetry.bits(code, state.getBits(), state.getBlack());
+        return (long) symmetry.cell(code, state.getBlack()) << 32 | bits;
+    }
+}
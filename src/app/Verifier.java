@@ -0,0 +1,299 @@
+package app;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.InvalidParameterException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The Verifier class checks submitted solutions with no display:
+ * each board is made again from its seed (as Board.generate does),
+ * the presses are replayed on a packed state, and the result has
+ * to be solved. Submissions are lines of text, verified in batches
+ * on every core and written back in order as each batch finishes.
+ * Each worker reuses one state, and presses are replayed as they're
+ * read, so a verification allocates next to nothing.
+ * Line format: id, the board's seed (Board.getSeed()), size, then
+ * each press as row * size + col, all separated by whitespace.
+ * Output: "id OK presses", or "id FAIL reason".
+ */
+public class Verifier {
+    public static final int BATCH = 1 << 12; //Lines read before verifying (bounds memory)
+    private static final int LEAF = 64; //Lines per task that isn't split further
+    private final ThreadLocal<State[]> states = ThreadLocal.withInitial(() -> new State[1]);
+    private final ForkJoinPool pool;
+    private long verified; //Submissions streamed so far
+    private long solved; //How many of those solved their boards
+
+    /**
+     * Sets up a verifier
+     * @param threads How many workers to use
+     */
+    public Verifier(int threads) {
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Checks whether presses solve a seed's board
+     * @param seed The board's seed
+     * @param size The size of the board
+     * @param moves The presses (row * size + col), in order
+     * @return Whether the board ends up solved
+     */
+    public static boolean solves(long seed, int size, int[] moves) {
+        State state = new State(size);
+        state.fill(seed);
+        for(int move : moves) {
+            if(move < 0 || move >= size * size) //Validation (should be on the board)
+                throw new InvalidParameterException("Invalid move received");
+            state.press(move / size, move % size);
+        } //End replay loop
+        return state.isSolved();
+    }
+
+    /**
+     * Verifies one submission, on the calling thread
+     * @param line The submission (see the class comment)
+     * @return The result line
+     */
+    public String verify(String line) {
+        Line in = new Line(line);
+        String id = in.token();
+        if(id == null)
+            return "? FAIL empty line";
+        long seed;
+        int size;
+        try { //Header first
+            seed = Long.parseLong(in.token());
+            size = Integer.parseInt(in.token());
+        } catch(NumberFormatException e) { return id + " FAIL bad header"; }
+        if(size < 2 || size > Board.MAX_SIZE) //Validation (should be a board Board can make)
+            return id + " FAIL bad size";
+        int cells = size * size, presses = 0;
+        State state = state(size);
+        state.fill(seed);
+        for(; in.hasNext(); presses++) { //Then replay each press as it's read
+            int move = in.press();
+            if(move < 0 || move >= cells) //Validation (should be on the board)
+                return id + " FAIL invalid press " + (presses + 1);
+            state.press(move / size, move % size);
+        } //End replay loop
+        return state.isSolved() ? id + " OK " + presses : id + " FAIL unsolved";
+    }
+
+    /**
+     * Verifies a batch of submissions on every worker
+     * @param lines The submissions
+     * @param count How many of those to verify
+     * @return The result lines, in the same order
+     */
+    public String[] verifyAll(String[] lines, int count) {
+        String[] results = new String[count];
+        pool.invoke(new Chunk(lines, results, 0, count));
+        return results;
+    }
+
+    /**
+     * Verifies a stream of submissions, a batch at a time,
+     * writing each batch's results as soon as it's done
+     * @param in The submissions, a line each
+     * @param out Where results go, a line each (in the same order)
+     * @throws IOException If reading or writing fails
+     */
+    public void verifyAll(BufferedReader in, Writer out) throws IOException {
+        String[] lines = new String[BATCH];
+        for(int count; (count = read(in, lines)) > 0; verified += count) {
+            for(String result : verifyAll(lines, count)) {
+                out.write(result);
+                out.write('\n');
+                if(result.indexOf(" OK ") >= 0)
+                    solved++;
+            } //End result loop
+            out.flush(); //Results stream out a batch at a time
+        } //End batch loop
+    }
+
+    /**
+     * Get method to access how many submissions were streamed
+     * @return How many were verified by verifyAll(in, out)
+     */
+    public long getVerified() {
+        return verified;
+    }
+
+    /**
+     * Get method to access how many streamed submissions solved
+     * @return How many of those solved their boards
+     */
+    public long getSolved() {
+        return solved;
+    }
+
+    /**
+     * Shuts the workers down once the verifier isn't needed
+     */
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Helper method used to read a batch of lines
+     * @param in The submissions
+     * @param lines Where lines go
+     * @return How many were read (0 at the end)
+     * @throws IOException If reading fails
+     */
+    private static int read(BufferedReader in, String[] lines) throws IOException {
+        int count = 0;
+        for(String line; count < lines.length && (line = in.readLine()) != null; )
+            lines[count++] = line;
+        return count;
+    }
+
+    /**
+     * Helper method used to get the worker's state for a size
+     * (kept between submissions while the size stays the same)
+     * @param size The size of the board
+     * @return A state of that size, to be refilled
+     */
+    private State state(int size) {
+        State[] kept = states.get();
+        if(kept[0] == null || kept[0].getSize() != size)
+            kept[0] = new State(size);
+        return kept[0];
+    }
+
+    /**
+     * The main method, which verifies submissions and reports the rate
+     * @param args Command line args: a file of submissions ("-" or
+     *             none for stdin), then how many threads to use
+     * @throws IOException If reading or writing fails
+     */
+    public static void main(String[] args) throws IOException {
+        int threads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        Verifier verifier = new Verifier(threads);
+        long start = System.nanoTime();
+        try(BufferedReader in = args.length > 0 && !args[0].equals("-")
+                ? Files.newBufferedReader(Paths.get(args[0]))
+                : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)) {
+            verifier.verifyAll(in, out);
+        } //End streaming
+        verifier.close();
+        double seconds = (System.nanoTime() - start) / 1e9; //Summary on stderr, apart from the results
+        System.err.printf("Verified %,d submissions (%,d solved) in %.3f s: %,.0f/sec%n",
+                verifier.getVerified(), verifier.getSolved(), seconds, verifier.getVerified() / seconds);
+    }
+
+    /**
+     * The Chunk class verifies a range of lines, splitting it
+     * in half until it's small
+     */
+    private class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L; //(Tasks are serializable, though never serialized)
+        private final String[] lines;
+        private final String[] results;
+        private final int from, to;
+
+        /**
+         * Sets up a range of lines
+         * @param lines The submissions
+         * @param results Where results go, by line
+         * @param from The first line
+         * @param to One past the last line
+         */
+        Chunk(String[] lines, String[] results, int from, int to) {
+            this.lines = lines;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Splits big ranges, and verifies small ones
+         */
+        @Override
+        protected void compute() {
+            if(to - from > LEAF) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Chunk(lines, results, from, mid), new Chunk(lines, results, mid, to));
+                return;
+            } //End split
+            for(int i = from; i < to; i++)
+                results[i] = verify(lines[i]);
+        }
+    }
+
+    /**
+     * The Line class reads whitespace-separated numbers from a
+     * line without splitting it up, so long press lists are cheap
+     */
+    private static class Line {
+        private final String text;
+        private int at; //Next character
+
+        /**
+         * Starts reading a line
+         * @param text The line
+         */
+        Line(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Checks for anything left besides whitespace
+         * @return Whether there's another token
+         */
+        boolean hasNext() {
+            skip();
+            return at < text.length();
+        }
+
+        /**
+         * Reads the next token
+         * @return The token, or null if there isn't one
+         */
+        String token() {
+            skip();
+            int from = at;
+            while(at < text.length() && !Character.isWhitespace(text.charAt(at)))
+                at++;
+            return at > from ? text.substring(from, at) : null;
+        }
+
+        /**
+         * Reads the next token as a press (digits only)
+         * @return The press, or -1 if it isn't one
+         */
+        int press() {
+            skip();
+            int from = at;
+            long value = 0;
+            for(; at < text.length() && !Character.isWhitespace(text.charAt(at)); at++) {
+                int digit = text.charAt(at) - '0';
+                if(digit < 0 || digit > 9 || value > Integer.MAX_VALUE)
+                    value = -1; //Not a press, but keep going to the token's end
+                else if(value >= 0)
+                    value = value * 10 + digit;
+            } //End digit loop
+            return at > from && value <= Integer.MAX_VALUE ? (int) value : -1;
+        }
+
+        /**
+         * Helper method used to skip whitespace
+         */
+        private void skip() {
+            while(at < text.length() && Character.isWhitespace(text.charAt(at)))
+                at++;
+        }
+    }
+}
@@ -1,4 +1,5 @@
 module Fifteen.Mystic.Lights.GUI {
         requires transitive javafx.controls;
+        requires java.management;
         exports app;
 }
\ No newline at end of file